@@ -0,0 +1,153 @@
+package net.fortytwo.tpop.sail.benchmarks;
+
+import net.fortytwo.tpop.sail.GraphSail;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read benchmarks covering each access pattern of getStatements, plus literal lookups and context-filtered reads.
+ * Each invocation reads all statements matching one pattern, with bound values drawn from the loaded data.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GetStatementsBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int scale;
+
+    private GraphSail sail;
+    private SailConnection connection;
+    private SyntheticData data;
+    private List<Statement> statements;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = new SyntheticData(scale, 42L);
+        statements = data.getStatements();
+        sail = Sails.createSail(false);
+        Sails.load(sail, statements);
+        connection = sail.getConnection();
+        connection.begin();
+        random = new Random(7L);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connection.commit();
+        connection.close();
+        sail.shutDown();
+    }
+
+    @Benchmark
+    public long getStatementsS_POG() {
+        return Sails.count(connection.getStatements(randomStatement().getSubject(), null, null, false));
+    }
+
+    @Benchmark
+    public long getStatementsSP_OG() {
+        Statement st = randomStatement();
+        return Sails.count(connection.getStatements(st.getSubject(), st.getPredicate(), null, false));
+    }
+
+    @Benchmark
+    public long getStatementsO_SPG() {
+        return Sails.count(connection.getStatements(null, null, randomStatement().getObject(), false));
+    }
+
+    @Benchmark
+    public long getStatementsPO_SG() {
+        Statement st = randomStatement();
+        return Sails.count(connection.getStatements(null, st.getPredicate(), st.getObject(), false));
+    }
+
+    @Benchmark
+    public long getStatementsSPO_G() {
+        Statement st = randomStatement();
+        return Sails.count(connection.getStatements(st.getSubject(), st.getPredicate(), st.getObject(), false));
+    }
+
+    @Benchmark
+    public long getStatementsSPOG() {
+        Statement st = randomStatement();
+        return Sails.count(connection.getStatements(
+                st.getSubject(), st.getPredicate(), st.getObject(), false, st.getContext()));
+    }
+
+    @Benchmark
+    public long getStatementsP_SOG() {
+        IRI[] predicates = data.getPredicates();
+        return Sails.count(connection.getStatements(
+                null, predicates[random.nextInt(predicates.length)], null, false));
+    }
+
+    @Benchmark
+    public long getStatementsPG_SO() {
+        IRI[] predicates = data.getPredicates();
+        return Sails.count(connection.getStatements(
+                null, predicates[random.nextInt(predicates.length)], null, false, randomContext()));
+    }
+
+    @Benchmark
+    public long getStatementsG_SPO() {
+        return Sails.count(connection.getStatements(null, null, null, false, randomContext()));
+    }
+
+    @Benchmark
+    public long getStatementsByLiteral() {
+        List<Literal> literals = data.getLiterals();
+        return Sails.count(connection.getStatements(
+                null, null, literals.get(random.nextInt(literals.size())), false));
+    }
+
+    @Benchmark
+    public long getStatementsByMissingSubject() {
+        return Sails.count(connection.getStatements(
+                sail.getValueFactory().createIRI(SyntheticData.NS + "missing" + random.nextInt()), null, null, false));
+    }
+
+    @Benchmark
+    public long hasStatement() {
+        Statement st = randomStatement();
+        return connection.hasStatement(st.getSubject(), st.getPredicate(), st.getObject(), false) ? 1 : 0;
+    }
+
+    @Benchmark
+    public long size() {
+        return connection.size();
+    }
+
+    private Statement randomStatement() {
+        return statements.get(random.nextInt(statements.size()));
+    }
+
+    private IRI randomContext() {
+        IRI[] contexts = data.getContexts();
+        return contexts[random.nextInt(contexts.length)];
+    }
+}
@@ -0,0 +1,85 @@
+package net.fortytwo.tpop.sail.benchmarks;
+
+import net.fortytwo.tpop.sail.GraphSail;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parallel write benchmark: several threads, each with its own connection, add statements to a shared sail.
+ * The statements are distinct, but share their types, predicates and many of their objects, so that writers
+ * resolve overlapping values. Run with -t 1, -t 2, etc. to measure how throughput scales with the number of writers.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class ParallelWriteBenchmark {
+    @Param({"1000000"})
+    public int scale;
+
+    private List<Statement> statements;
+    private GraphSail sail;
+    private final AtomicInteger nextStatement = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void generateData() {
+        statements = new SyntheticData(scale, 42L).getStatements();
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        sail = Sails.createSail(false);
+        nextStatement.set(0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        sail.shutDown();
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+        private SailConnection connection;
+
+        @Setup(Level.Iteration)
+        public void setUp(final ParallelWriteBenchmark benchmark) {
+            connection = benchmark.sail.getConnection();
+            connection.begin();
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            connection.commit();
+            connection.close();
+        }
+    }
+
+    @Benchmark
+    public void addStatement(final Writer writer) {
+        Statement st = statements.get(nextStatement.getAndIncrement() % statements.size());
+        writer.connection.addStatement(st.getSubject(), st.getPredicate(), st.getObject(), st.getContext());
+    }
+}
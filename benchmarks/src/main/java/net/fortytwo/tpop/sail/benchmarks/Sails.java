@@ -0,0 +1,53 @@
+package net.fortytwo.tpop.sail.benchmarks;
+
+import net.fortytwo.tpop.sail.GraphSail;
+import net.fortytwo.tpop.sail.tg.TinkerGraphIndex;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.eclipse.rdf4j.sail.SailException;
+
+import java.util.Collection;
+
+/**
+ * Utilities for setting up GraphSail instances on TinkerGraph for benchmarking
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+class Sails {
+    private Sails() {
+    }
+
+    static GraphSail createSail(final boolean uniqueStatements) {
+        TinkerGraph graph = TinkerGraph.open();
+        GraphSail sail = new GraphSail(graph, key -> new TinkerGraphIndex(key, graph));
+        sail.enforceUniqueStatements(uniqueStatements);
+        sail.initialize();
+        sail.enableLiteralIndex();
+        return sail;
+    }
+
+    static void load(final GraphSail sail, final Collection<Statement> statements) {
+        try (SailConnection connection = sail.getConnection()) {
+            connection.begin();
+            for (Statement st : statements) {
+                connection.addStatement(st.getSubject(), st.getPredicate(), st.getObject(), st.getContext());
+            }
+            connection.commit();
+        }
+    }
+
+    static long count(final CloseableIteration<? extends Statement, SailException> iter) {
+        long count = 0;
+        try {
+            while (iter.hasNext()) {
+                iter.next();
+                count++;
+            }
+        } finally {
+            iter.close();
+        }
+        return count;
+    }
+}
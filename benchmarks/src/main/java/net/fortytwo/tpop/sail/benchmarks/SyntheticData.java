@@ -0,0 +1,157 @@
+package net.fortytwo.tpop.sail.benchmarks;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A deterministic generator of synthetic RDF data with a realistic shape:
+ * every subject has a type drawn from a small set of classes, predicates follow a skewed (Zipf-like)
+ * distribution, objects are a mix of resources and typed, plain and language-tagged literals,
+ * and statements are spread over the default graph and a few named graphs.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+public class SyntheticData {
+    public static final String NS = "http://example.org/bench/";
+
+    private static final int STATEMENTS_PER_SUBJECT = 10;
+    private static final int NUMBER_OF_PREDICATES = 20;
+    private static final int NUMBER_OF_CLASSES = 10;
+    private static final int NUMBER_OF_CONTEXTS = 8;
+    private static final String[] LANGUAGES = {"en", "de", "fr", "es"};
+
+    private final ValueFactory valueFactory = SimpleValueFactory.getInstance();
+    private final Random random;
+
+    private final IRI[] subjects;
+    private final IRI[] predicates;
+    private final IRI[] classes;
+    private final IRI[] contexts;
+    private final double[] predicateWeights;
+
+    private final List<Statement> statements = new ArrayList<>();
+    private final List<Literal> literals = new ArrayList<>();
+
+    /**
+     * @param scale the approximate number of statements to generate
+     * @param seed  a seed for the pseudo-random generator, so that data sets are reproducible
+     */
+    public SyntheticData(final int scale, final long seed) {
+        random = new Random(seed);
+
+        subjects = createIRIs("resource", Math.max(1, scale / STATEMENTS_PER_SUBJECT));
+        predicates = createIRIs("property", NUMBER_OF_PREDICATES);
+        classes = createIRIs("Class", NUMBER_OF_CLASSES);
+        contexts = createIRIs("graph", NUMBER_OF_CONTEXTS);
+        predicateWeights = createZipfWeights(NUMBER_OF_PREDICATES);
+
+        generate();
+    }
+
+    public List<Statement> getStatements() {
+        return statements;
+    }
+
+    public IRI[] getSubjects() {
+        return subjects;
+    }
+
+    public IRI[] getPredicates() {
+        return predicates;
+    }
+
+    public IRI[] getClasses() {
+        return classes;
+    }
+
+    public IRI[] getContexts() {
+        return contexts;
+    }
+
+    public List<Literal> getLiterals() {
+        return literals;
+    }
+
+    private void generate() {
+        for (IRI subject : subjects) {
+            Resource context = randomContext();
+            statements.add(valueFactory.createStatement(
+                    subject, RDF.TYPE, classes[random.nextInt(classes.length)], context));
+            for (int i = 1; i < STATEMENTS_PER_SUBJECT; i++) {
+                IRI predicate = predicates[randomPredicateIndex()];
+                statements.add(valueFactory.createStatement(subject, predicate, randomObject(), context));
+            }
+        }
+    }
+
+    private Value randomObject() {
+        switch (random.nextInt(5)) {
+            case 0:
+            case 1:
+                return subjects[random.nextInt(subjects.length)];
+            case 2:
+                return addLiteral(valueFactory.createLiteral(random.nextInt(1000)));
+            case 3:
+                return addLiteral(valueFactory.createLiteral("value " + random.nextInt(10000)));
+            default:
+                return addLiteral(valueFactory.createLiteral("label " + random.nextInt(1000),
+                        LANGUAGES[random.nextInt(LANGUAGES.length)]));
+        }
+    }
+
+    private Literal addLiteral(final Literal literal) {
+        // keep a bounded sample of literals, for lookups
+        if (literals.size() < 10000) {
+            literals.add(literal);
+        }
+        return literal;
+    }
+
+    private Resource randomContext() {
+        // half of all subjects are described in the default graph
+        int i = random.nextInt(2 * contexts.length);
+        return i < contexts.length ? contexts[i] : null;
+    }
+
+    private int randomPredicateIndex() {
+        double r = random.nextDouble();
+        for (int i = 0; i < predicateWeights.length; i++) {
+            r -= predicateWeights[i];
+            if (r <= 0) {
+                return i;
+            }
+        }
+        return predicateWeights.length - 1;
+    }
+
+    private IRI[] createIRIs(final String localNamePrefix, final int count) {
+        IRI[] iris = new IRI[count];
+        for (int i = 0; i < count; i++) {
+            iris[i] = valueFactory.createIRI(NS + localNamePrefix + i);
+        }
+        return iris;
+    }
+
+    private static double[] createZipfWeights(final int n) {
+        double[] weights = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            weights[i] = 1.0 / (i + 1);
+            sum += weights[i];
+        }
+        for (int i = 0; i < n; i++) {
+            weights[i] /= sum;
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,91 @@
+package net.fortytwo.tpop.sail.benchmarks;
+
+import net.fortytwo.tpop.sail.GraphSail;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write benchmarks: statement additions, with and without the unique statements policy, and removals.
+ * Since writes are destructive, each iteration begins with a freshly loaded sail and performs a fixed batch
+ * of operations, so results are reported as time per batch.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = WriteBenchmark.BATCH_SIZE)
+@Measurement(iterations = 5, batchSize = WriteBenchmark.BATCH_SIZE)
+@Fork(1)
+public class WriteBenchmark {
+    static final int BATCH_SIZE = 10000;
+
+    @Param({"10000", "100000"})
+    public int scale;
+
+    @Param({"false", "true"})
+    public boolean uniqueStatements;
+
+    private List<Statement> existingStatements;
+    private List<Statement> newStatements;
+
+    private GraphSail sail;
+    private SailConnection connection;
+    private int nextStatement;
+
+    @Setup(Level.Trial)
+    public void generateData() {
+        existingStatements = new SyntheticData(Math.max(scale, BATCH_SIZE), 42L).getStatements();
+        newStatements = new SyntheticData(BATCH_SIZE, 43L).getStatements();
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        sail = Sails.createSail(uniqueStatements);
+        Sails.load(sail, existingStatements);
+        connection = sail.getConnection();
+        connection.begin();
+        nextStatement = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        connection.commit();
+        connection.close();
+        sail.shutDown();
+    }
+
+    @Benchmark
+    public void addStatement() {
+        Statement st = newStatements.get(nextStatement++ % newStatements.size());
+        connection.addStatement(st.getSubject(), st.getPredicate(), st.getObject(), st.getContext());
+    }
+
+    @Benchmark
+    public void addExistingStatement() {
+        Statement st = existingStatements.get(nextStatement++ % existingStatements.size());
+        connection.addStatement(st.getSubject(), st.getPredicate(), st.getObject(), st.getContext());
+    }
+
+    @Benchmark
+    public void removeStatement() {
+        Statement st = existingStatements.get(nextStatement++ % existingStatements.size());
+        connection.removeStatements(st.getSubject(), st.getPredicate(), st.getObject(), st.getContext());
+    }
+}
@@ -0,0 +1,118 @@
+package net.fortytwo.tpop.sail;
+
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The access path chosen for a statement pattern: the edges which are scanned, the estimated number of them,
+ * and the bound positions which are checked against each scanned edge rather than used for access.
+ * Plans are chosen by comparing the estimated cost of each access path available for the bound positions,
+ * and may be inspected for diagnostics through {@link GraphSail#explain}.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+public class AccessPlan {
+
+    public enum Path {
+        // a bound value does not exist in the graph, so nothing is scanned
+        Empty,
+        // the edges of the statement index for an exact subject, predicate, object and context
+        StatementIndex,
+        // the out-edges of the subject's vertex
+        SubjectEdges,
+        // the in-edges of the object's vertex
+        ObjectEdges,
+        // the edges of the predicate index
+        PredicateIndex,
+        // the edges of the context index
+        ContextIndex,
+        // all edges
+        FullScan
+    }
+
+    public enum Position {
+        Subject, Predicate, Object, Context
+    }
+
+    private final Path path;
+    private final long estimatedCost;
+    private final boolean predicatePushedDown;
+    private final List<Position> filters;
+
+    // resolved bound positions, as needed for execution of the plan
+    final Vertex subjectVertex;
+    final Vertex objectVertex;
+    final String label;
+    final Set<String> contexts;
+
+    AccessPlan(final Path path,
+               final long estimatedCost,
+               final Vertex subjectVertex,
+               final Vertex objectVertex,
+               final String label,
+               final Set<String> contexts) {
+        this.path = path;
+        this.estimatedCost = estimatedCost;
+        this.subjectVertex = subjectVertex;
+        this.objectVertex = objectVertex;
+        this.label = label;
+        this.contexts = contexts;
+
+        predicatePushedDown = null != label && (path == Path.SubjectEdges || path == Path.ObjectEdges);
+
+        List<Position> filters = new LinkedList<>();
+        if (path != Path.Empty && path != Path.StatementIndex) {
+            if (null != subjectVertex && path != Path.SubjectEdges) {
+                filters.add(Position.Subject);
+            }
+            if (null != label && path != Path.PredicateIndex && !predicatePushedDown) {
+                filters.add(Position.Predicate);
+            }
+            if (null != objectVertex && path != Path.ObjectEdges) {
+                filters.add(Position.Object);
+            }
+            if (null != contexts && path != Path.ContextIndex) {
+                filters.add(Position.Context);
+            }
+        }
+        this.filters = Collections.unmodifiableList(filters);
+    }
+
+    /**
+     * @return the edges which are scanned
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return the estimated number of edges scanned
+     */
+    public long getEstimatedCost() {
+        return estimatedCost;
+    }
+
+    /**
+     * @return whether the predicate is used to select edges by label from the adjacency of a vertex,
+     * rather than checked against each adjacent edge
+     */
+    public boolean isPredicatePushedDown() {
+        return predicatePushedDown;
+    }
+
+    /**
+     * @return the bound positions which are checked against each scanned edge
+     */
+    public List<Position> getFilters() {
+        return filters;
+    }
+
+    @Override
+    public String toString() {
+        return path + (predicatePushedDown ? "(label)" : "") + " cost=" + estimatedCost + " filters=" + filters;
+    }
+}
@@ -0,0 +1,1060 @@
+package net.fortytwo.tpop.sail;
+
+import com.google.common.collect.Iterators;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.EmptyIteration;
+import org.eclipse.rdf4j.common.iteration.LookAheadIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.vocabulary.FN;
+import org.eclipse.rdf4j.query.AbstractBindingSet;
+import org.eclipse.rdf4j.query.Binding;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.And;
+import org.eclipse.rdf4j.query.algebra.Compare;
+import org.eclipse.rdf4j.query.algebra.Filter;
+import org.eclipse.rdf4j.query.algebra.FunctionCall;
+import org.eclipse.rdf4j.query.algebra.Join;
+import org.eclipse.rdf4j.query.algebra.QueryModelNode;
+import org.eclipse.rdf4j.query.algebra.Regex;
+import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.SubQueryValueOperator;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.ValueConstant;
+import org.eclipse.rdf4j.query.algebra.ValueExpr;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.ValueExprEvaluationException;
+import org.eclipse.rdf4j.query.algebra.helpers.AbstractQueryModelVisitor;
+import org.eclipse.rdf4j.query.impl.SimpleBinding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A basic graph pattern, together with any filters over it, compiled for evaluation as a walk over the graph.
+ * Each statement pattern is matched in turn by following the edges of the vertices bound by earlier patterns,
+ * and variables are bound to vertices, edge labels and context values rather than to RDF values.
+ * Values are only created for those bindings which are actually read from a solution, such as the projected ones.
+ * Patterns and filters are matched in the order of the join tree, as arranged by the query optimizer,
+ * and with the same semantics as in the standard evaluation strategy.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+class BasicGraphPattern {
+    private enum Kind {Vertex, Label, Context}
+
+    private static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    // the variables and constants of the pattern; constants have no name
+    private final List<String> slotNames = new ArrayList<>();
+    private final List<Kind> slotKinds = new ArrayList<>();
+    private final List<Value> slotValues = new ArrayList<>();
+    private final Map<String, Integer> slotsByName = new HashMap<>();
+    private final Map<List<Object>, Integer> constantSlots = new HashMap<>();
+
+    private final List<Object> steps = new LinkedList<>();
+
+    private BasicGraphPattern() {
+    }
+
+    /**
+     * @return the compiled pattern, or null if the expression is anything other than a tree of joins and filters
+     * over statement patterns, which can be evaluated as a walk
+     */
+    static BasicGraphPattern compile(final TupleExpr expr) {
+        return compile(Collections.singletonList(expr));
+    }
+
+    /**
+     * @return the compiled join of the given expressions, or null if any of them cannot be evaluated as a walk
+     */
+    static BasicGraphPattern compile(final List<TupleExpr> joined) {
+        BasicGraphPattern pattern = new BasicGraphPattern();
+        for (TupleExpr expr : joined) {
+            if (!pattern.add(expr)) {
+                return null;
+            }
+        }
+        pattern.findRestrictions();
+        pattern.formStars();
+        return pattern;
+    }
+
+    CloseableIteration<BindingSet, QueryEvaluationException> evaluate(final DataStore dataStore,
+                                                                     final EvaluationStrategy strategy,
+                                                                     final BindingSet bindings) {
+        return evaluate(dataStore, strategy, bindings, null);
+    }
+
+    /**
+     * @param vertices the vertices of the values returned by getVertexValues for the given bindings, as resolved
+     *                 in advance, or null if they are to be resolved here
+     */
+    CloseableIteration<BindingSet, QueryEvaluationException> evaluate(final DataStore dataStore,
+                                                                     final EvaluationStrategy strategy,
+                                                                     final BindingSet bindings,
+                                                                     final Map<Value, Vertex> vertices) {
+        return evaluate(dataStore, strategy, bindings, vertices, null, 0, -1);
+    }
+
+    /**
+     * Evaluates the pattern with the solution modifiers of the query applied by the walk itself.
+     * Duplicates are recognized by the vertices, labels and contexts they bind, so that skipped and duplicate
+     * solutions are never converted to values, and the walk ends as soon as the limit is reached.
+     *
+     * @param distinctNames the names of the bindings by which solutions are deduplicated,
+     *                      or null if duplicates are kept
+     * @param offset        the number of (distinct) solutions to skip
+     * @param limit         the maximum number of solutions, or -1 for no limit
+     */
+    CloseableIteration<BindingSet, QueryEvaluationException> evaluate(final DataStore dataStore,
+                                                                     final EvaluationStrategy strategy,
+                                                                     final BindingSet bindings,
+                                                                     final Set<String> distinctNames,
+                                                                     final long offset,
+                                                                     final long limit) {
+        return evaluate(dataStore, strategy, bindings, null, distinctNames, offset, limit);
+    }
+
+    /**
+     * @return the names of the variables of the pattern
+     */
+    Set<String> getVariableNames() {
+        return slotsByName.keySet();
+    }
+
+    private CloseableIteration<BindingSet, QueryEvaluationException> evaluate(final DataStore dataStore,
+                                                                             final EvaluationStrategy strategy,
+                                                                             final BindingSet bindings,
+                                                                             final Map<Value, Vertex> vertices,
+                                                                             final Set<String> distinctNames,
+                                                                             final long offset,
+                                                                             final long limit) {
+        if (0 == limit) {
+            return new EmptyIteration<>();
+        }
+
+        Object[] row = new Object[slotNames.size()];
+        for (int i = 0; i < row.length; i++) {
+            Value value = getSlotValue(i, bindings);
+            if (null != value) {
+                row[i] = null != vertices && slotKinds.get(i) == Kind.Vertex
+                        ? vertices.get(value)
+                        : resolve(dataStore, value, slotKinds.get(i));
+                // a value which is not in the graph, or not of the right type for its position, matches nothing
+                if (null == row[i]) {
+                    return new EmptyIteration<>();
+                }
+            }
+        }
+
+        Walk walk = new Walk(dataStore, strategy, bindings, row);
+        if (null != distinctNames) {
+            // incoming bindings are the same in every solution
+            List<Integer> keySlots = new ArrayList<>();
+            for (String name : distinctNames) {
+                Integer slot = slotsByName.get(name);
+                if (null != slot && null == row[slot]) {
+                    keySlots.add(slot);
+                }
+            }
+            walk.distinctSlots = new int[keySlots.size()];
+            for (int i = 0; i < walk.distinctSlots.length; i++) {
+                walk.distinctSlots[i] = keySlots.get(i);
+            }
+            walk.distinctKeys = new HashSet<>();
+        }
+        walk.toSkip = offset;
+        walk.remaining = limit;
+        return walk;
+    }
+
+    /**
+     * @return the values which are to be resolved to vertices in order to evaluate the pattern with the given bindings
+     */
+    Set<Value> getVertexValues(final BindingSet bindings) {
+        Set<Value> values = new HashSet<>();
+        for (int i = 0; i < slotNames.size(); i++) {
+            Value value = getSlotValue(i, bindings);
+            if (null != value && slotKinds.get(i) == Kind.Vertex) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    private Value getSlotValue(final int slot, final BindingSet bindings) {
+        String name = slotNames.get(slot);
+        Value value = null == name ? null : bindings.getValue(name);
+        return null == value ? slotValues.get(slot) : value;
+    }
+
+    private boolean add(final TupleExpr expr) {
+        if (expr instanceof Join) {
+            Join join = (Join) expr;
+            return add(join.getLeftArg()) && add(join.getRightArg());
+        } else if (expr instanceof Filter) {
+            Filter filter = (Filter) expr;
+            return add(filter.getArg()) && addFilter(filter);
+        } else if (expr instanceof StatementPattern) {
+            return addPattern((StatementPattern) expr);
+        } else {
+            return false;
+        }
+    }
+
+    private boolean addPattern(final StatementPattern sp) {
+        boolean namedContextsOnly = sp.getScope() == StatementPattern.Scope.NAMED_CONTEXTS;
+        // a context variable would be left unbound by statements in the default graph
+        if (null != sp.getContextVar() && !namedContextsOnly) {
+            return false;
+        }
+
+        int subject = toSlot(sp.getSubjectVar(), Kind.Vertex);
+        int predicate = toSlot(sp.getPredicateVar(), Kind.Label);
+        int object = toSlot(sp.getObjectVar(), Kind.Vertex);
+        int context = null == sp.getContextVar() ? -1 : toSlot(sp.getContextVar(), Kind.Context);
+        if (subject < 0 || predicate < 0 || object < 0 || (null != sp.getContextVar() && context < 0)) {
+            return false;
+        }
+
+        steps.add(new PatternStep(subject, predicate, object, context, namedContextsOnly));
+        return true;
+    }
+
+    // Patterns with the same subject and a constant predicate in the default graph are merged into a star,
+    // at the position of the first of them. Filters only refer to bindings of the patterns before them,
+    // so moving patterns ahead of a filter does not change its result.
+    private void formStars() {
+        Map<Integer, List<PatternStep>> bySubject = new HashMap<>();
+        for (Object step : steps) {
+            if (step instanceof PatternStep && isStarPattern((PatternStep) step)) {
+                bySubject.computeIfAbsent(((PatternStep) step).subject, subject -> new LinkedList<>())
+                        .add((PatternStep) step);
+            }
+        }
+
+        ListIterator<Object> iter = steps.listIterator();
+        while (iter.hasNext()) {
+            Object step = iter.next();
+            List<PatternStep> star = step instanceof PatternStep ? bySubject.get(((PatternStep) step).subject) : null;
+            if (null != star && star.size() > 1 && star.contains(step)) {
+                if (star.get(0) == step) {
+                    iter.set(new StarStep(star));
+                } else {
+                    iter.remove();
+                }
+            }
+        }
+    }
+
+    private boolean isStarPattern(final PatternStep step) {
+        return step.context < 0 && null == slotNames.get(step.predicate);
+    }
+
+    // returns -1 if the variable is used with another kind of value elsewhere in the pattern
+    private int toSlot(final Var var, final Kind kind) {
+        // equal constants share a slot
+        if (var.isConstant()) {
+            List<Object> key = Arrays.asList(kind, var.getValue());
+            Integer slot = constantSlots.get(key);
+            if (null == slot) {
+                slot = newSlot(null, kind, var.getValue());
+                constantSlots.put(key, slot);
+            }
+            return slot;
+        }
+
+        Integer slot = slotsByName.get(var.getName());
+        if (null == slot) {
+            slot = newSlot(var.getName(), kind, var.getValue());
+            slotsByName.put(var.getName(), slot);
+            return slot;
+        }
+        return slotKinds.get(slot) == kind ? slot : -1;
+    }
+
+    private int newSlot(final String name, final Kind kind, final Value value) {
+        slotNames.add(name);
+        slotKinds.add(kind);
+        slotValues.add(value);
+        return slotNames.size() - 1;
+    }
+
+    private boolean addFilter(final Filter filter) {
+        Set<String> names = new LinkedHashSet<>();
+        boolean[] supported = {true};
+        filter.getCondition().visit(new AbstractQueryModelVisitor<RuntimeException>() {
+            @Override
+            public void meet(final Var node) {
+                if (!node.hasValue()) {
+                    names.add(node.getName());
+                }
+            }
+
+            @Override
+            protected void meetSubQueryValueOperator(final SubQueryValueOperator node) {
+                // EXISTS and the like are evaluated against all bindings
+                supported[0] = false;
+            }
+        });
+        if (!supported[0]) {
+            return false;
+        }
+
+        // as in the standard strategy, only the bindings of the filtered expression are in scope for the filter
+        if (!isPartOfSubQuery(filter)) {
+            names.retainAll(filter.getBindingNames());
+        }
+        steps.add(new FilterStep(filter.getCondition(), names));
+        return true;
+    }
+
+    private boolean isPartOfSubQuery(final QueryModelNode node) {
+        for (QueryModelNode n = node; null != n; n = n.getParentNode()) {
+            if (n instanceof SubQueryValueOperator) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // A comparison or text search of a variable against a constant literal, in a filter, restricts the objects of
+    // the pattern which first binds the variable, so that the pattern may be matched from the range or text index.
+    // The filter itself remains in place, and is evaluated against each match.
+    private void findRestrictions() {
+        for (Object step : steps) {
+            if (step instanceof FilterStep) {
+                for (ValueExpr conjunct : getConjuncts(((FilterStep) step).condition, new LinkedList<>())) {
+                    if (conjunct instanceof Compare) {
+                        addRange((Compare) conjunct, (FilterStep) step);
+                    } else {
+                        addTextSearch(conjunct, (FilterStep) step);
+                    }
+                }
+            }
+        }
+    }
+
+    private List<ValueExpr> getConjuncts(final ValueExpr expr, final List<ValueExpr> conjuncts) {
+        if (expr instanceof And) {
+            getConjuncts(((And) expr).getLeftArg(), conjuncts);
+            getConjuncts(((And) expr).getRightArg(), conjuncts);
+        } else {
+            conjuncts.add(expr);
+        }
+        return conjuncts;
+    }
+
+    private void addRange(final Compare compare, final FilterStep filter) {
+        Compare.CompareOp operator = compare.getOperator();
+        Value constant = getConstantValue(compare.getRightArg());
+        ValueExpr variable = compare.getLeftArg();
+        if (null == constant) {
+            constant = getConstantValue(compare.getLeftArg());
+            variable = compare.getRightArg();
+            operator = flip(operator);
+        }
+        PatternStep pattern = getRestrictedPattern(variable, filter);
+        // the range index is keyed by label
+        if (!(constant instanceof Literal) || null == pattern || null != slotNames.get(pattern.predicate)) {
+            return;
+        }
+
+        RangeIndex.Range range = RangeIndex.Range.forComparison(operator, (Literal) constant);
+        if (null != range) {
+            pattern.range = null == pattern.range ? range : pattern.range.intersect(range);
+        }
+    }
+
+    // CONTAINS, STRSTARTS, STRENDS and REGEX, with a constant string or plain regular expression, over a variable
+    // or its lower case
+    private void addTextSearch(final ValueExpr expr, final FilterStep filter) {
+        ValueExpr text;
+        String needle;
+        if (expr instanceof FunctionCall && isSubstringFunction(((FunctionCall) expr).getURI())
+                && 2 == ((FunctionCall) expr).getArgs().size()) {
+            text = ((FunctionCall) expr).getArgs().get(0);
+            Value constant = getConstantValue(((FunctionCall) expr).getArgs().get(1));
+            needle = constant instanceof Literal ? constant.stringValue() : null;
+        } else if (expr instanceof Regex) {
+            Regex regex = (Regex) expr;
+            text = regex.getArg();
+            Value pattern = getConstantValue(regex.getPatternArg());
+            Value flags = null == regex.getFlagsArg() ? null : getConstantValue(regex.getFlagsArg());
+            needle = pattern instanceof Literal && (null == regex.getFlagsArg() || isPlainRegexFlags(flags))
+                    ? getRegexString(pattern.stringValue()) : null;
+        } else {
+            return;
+        }
+
+        // The lower case of a string may differ from that of its characters, but not in its ASCII characters
+        boolean lowerCase = text instanceof FunctionCall
+                && FN.LOWER_CASE.stringValue().equals(((FunctionCall) text).getURI())
+                && 1 == ((FunctionCall) text).getArgs().size();
+        PatternStep pattern = getRestrictedPattern(
+                lowerCase ? ((FunctionCall) text).getArgs().get(0) : text, filter);
+        if (null == needle || null == pattern) {
+            return;
+        }
+
+        Set<String> grams = TextIndex.getGrams(TextIndex.fold(needle), lowerCase);
+        if (!grams.isEmpty()) {
+            if (null == pattern.text) {
+                pattern.text = grams;
+            } else {
+                pattern.text.addAll(grams);
+            }
+        }
+    }
+
+    private boolean isSubstringFunction(final String function) {
+        return FN.CONTAINS.stringValue().equals(function)
+                || FN.STARTS_WITH.stringValue().equals(function)
+                || FN.ENDS_WITH.stringValue().equals(function);
+    }
+
+    // flags which do not change what a plain string matches, apart from case
+    private boolean isPlainRegexFlags(final Value flags) {
+        return flags instanceof Literal && flags.stringValue().matches("[imsdu]*");
+    }
+
+    // the string which a regular expression matches, if it is a plain string, possibly anchored
+    private String getRegexString(final String regex) {
+        String plain = regex.startsWith("^") ? regex.substring(1) : regex;
+        plain = plain.endsWith("$") ? plain.substring(0, plain.length() - 1) : plain;
+        for (char c : plain.toCharArray()) {
+            if (REGEX_METACHARACTERS.indexOf(c) >= 0) {
+                return null;
+            }
+        }
+        return plain;
+    }
+
+    // the pattern which first binds the variable, as an object in any graph, before the filter is applied
+    private PatternStep getRestrictedPattern(final ValueExpr variable, final FilterStep filter) {
+        if (!(variable instanceof Var) || ((Var) variable).hasValue()
+                || !filter.names.contains(((Var) variable).getName())) {
+            return null;
+        }
+
+        Integer slot = slotsByName.get(((Var) variable).getName());
+        PatternStep pattern = null == slot ? null : getFirstPattern(slot);
+        return null == pattern || pattern.object != slot || pattern.context >= 0 || pattern.namedContextsOnly
+                || steps.indexOf(pattern) > steps.indexOf(filter) ? null : pattern;
+    }
+
+    private Value getConstantValue(final ValueExpr expr) {
+        if (expr instanceof ValueConstant) {
+            return ((ValueConstant) expr).getValue();
+        } else if (expr instanceof Var) {
+            return ((Var) expr).getValue();
+        } else {
+            return null;
+        }
+    }
+
+    private Compare.CompareOp flip(final Compare.CompareOp operator) {
+        switch (operator) {
+            case LT:
+                return Compare.CompareOp.GT;
+            case LE:
+                return Compare.CompareOp.GE;
+            case GT:
+                return Compare.CompareOp.LT;
+            case GE:
+                return Compare.CompareOp.LE;
+            default:
+                return operator;
+        }
+    }
+
+    // the pattern which first binds the slot
+    private PatternStep getFirstPattern(final int slot) {
+        for (Object step : steps) {
+            if (step instanceof PatternStep) {
+                PatternStep pattern = (PatternStep) step;
+                if (pattern.subject == slot || pattern.predicate == slot || pattern.object == slot
+                        || pattern.context == slot) {
+                    return pattern;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Object resolve(final DataStore dataStore, final Value value, final Kind kind) {
+        switch (kind) {
+            case Vertex:
+                return dataStore.getVertexByValue(value);
+            case Label:
+                return value instanceof IRI ? value.stringValue() : null;
+            case Context:
+                return value instanceof Resource ? dataStore.toContextKey((Resource) value) : null;
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    // incoming bindings take precedence over those of the walk
+    private Value getValue(final DataStore dataStore,
+                           final BindingSet bindings,
+                           final Object[] row,
+                           final String name) {
+        Value value = bindings.getValue(name);
+        if (null == value) {
+            Integer slot = slotsByName.get(name);
+            if (null != slot && null != row[slot]) {
+                value = toValue(dataStore, row[slot], slotKinds.get(slot));
+            }
+        }
+        return value;
+    }
+
+    private Value toValue(final DataStore dataStore, final Object resolved, final Kind kind) {
+        switch (kind) {
+            case Vertex:
+                return dataStore.toValue((Vertex) resolved);
+            case Label:
+                return dataStore.toPredicate((String) resolved);
+            case Context:
+                return dataStore.toContext((String) resolved);
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    private static class PatternStep {
+        private final int subject;
+        private final int predicate;
+        private final int object;
+        private final int context;
+        private final boolean namedContextsOnly;
+        // the objects which may satisfy the filters on them, or null if unrestricted
+        private RangeIndex.Range range;
+        // n-grams which occur in any object which may satisfy the filters on it, or null if unrestricted
+        private Set<String> text;
+
+        private PatternStep(final int subject,
+                            final int predicate,
+                            final int object,
+                            final int context,
+                            final boolean namedContextsOnly) {
+            this.subject = subject;
+            this.predicate = predicate;
+            this.object = object;
+            this.context = context;
+            this.namedContextsOnly = namedContextsOnly;
+        }
+    }
+
+    /**
+     * Patterns with the same subject and constant predicates, matched from a single scan of the subject's out-edges
+     */
+    private static class StarStep {
+        private final int subject;
+        private final int[] predicates;
+        private final int[] objects;
+        private final List<PatternStep> patterns;
+
+        private StarStep(final List<PatternStep> patterns) {
+            this.patterns = patterns;
+            subject = patterns.get(0).subject;
+            predicates = new int[patterns.size()];
+            objects = new int[patterns.size()];
+            int i = 0;
+            for (PatternStep pattern : patterns) {
+                predicates[i] = pattern.predicate;
+                objects[i++] = pattern.object;
+            }
+        }
+    }
+
+    private static class FilterStep {
+        private final ValueExpr condition;
+        private final Set<String> names;
+
+        private FilterStep(final ValueExpr condition, final Set<String> names) {
+            this.condition = condition;
+            this.names = names;
+        }
+    }
+
+    private interface Cursor {
+        // advances to the next match of the step, given the bindings of the previous steps,
+        // or returns false and resets the step, leaving the bindings as they were before the step
+        boolean advance();
+    }
+
+    /**
+     * A depth-first walk, with one cursor per step
+     */
+    private class Walk extends LookAheadIteration<BindingSet, QueryEvaluationException> {
+        private final DataStore dataStore;
+        private final EvaluationStrategy strategy;
+        private final BindingSet bindings;
+        private final Object[] row;
+        private final Cursor[] cursors;
+        private int depth;
+
+        // solution modifiers
+        private int[] distinctSlots;
+        private Set<List<Object>> distinctKeys;
+        private long toSkip;
+        private long remaining = -1;
+
+        private Walk(final DataStore dataStore,
+                     final EvaluationStrategy strategy,
+                     final BindingSet bindings,
+                     final Object[] row) {
+            this.dataStore = dataStore;
+            this.strategy = strategy;
+            this.bindings = bindings;
+            this.row = row;
+
+            cursors = new Cursor[steps.size()];
+            int i = 0;
+            for (Object step : steps) {
+                if (step instanceof PatternStep) {
+                    cursors[i++] = new PatternCursor((PatternStep) step);
+                } else if (step instanceof StarStep) {
+                    cursors[i++] = new StarCursor((StarStep) step);
+                } else {
+                    cursors[i++] = new FilterCursor((FilterStep) step);
+                }
+            }
+        }
+
+        @Override
+        protected BindingSet getNextElement() throws QueryEvaluationException {
+            if (0 == remaining) {
+                return null;
+            }
+
+            while (depth >= 0) {
+                if (depth == cursors.length) {
+                    depth--;
+                    if (null != distinctKeys && !distinctKeys.add(getDistinctKey())) {
+                        continue;
+                    }
+                    if (toSkip > 0) {
+                        toSkip--;
+                        continue;
+                    }
+                    if (remaining > 0) {
+                        remaining--;
+                    }
+                    return new Solution(dataStore, bindings, row.clone());
+                }
+
+                if (cursors[depth].advance()) {
+                    depth++;
+                } else {
+                    depth--;
+                }
+            }
+
+            return null;
+        }
+
+        // vertices, labels and contexts correspond one-to-one with the values they are converted to
+        private List<Object> getDistinctKey() {
+            Object[] key = new Object[distinctSlots.length];
+            for (int i = 0; i < key.length; i++) {
+                key[i] = row[distinctSlots[i]];
+            }
+            return Arrays.asList(key);
+        }
+
+        // the edges of a pattern with an unbound subject and object, from the range or text index of its objects,
+        // or null if neither index is more selective than the given cost
+        private Iterator<Edge> getIndexedEdges(final PatternStep pattern, final String label, final long cost) {
+            Iterator<Edge> edges = null;
+            long cheapest = cost;
+            if (null != pattern.range && null != label) {
+                long count = dataStore.countEdgesInRange(label, pattern.range, cheapest);
+                if (count >= 0 && count < cheapest) {
+                    edges = dataStore.getEdgesInRange(label, pattern.range);
+                    cheapest = count;
+                }
+            }
+            if (null != pattern.text) {
+                long count = dataStore.countLiteralsByText(pattern.text);
+                if (count >= 0 && count < cheapest) {
+                    edges = dataStore.getEdgesByText(label, pattern.text);
+                }
+            }
+            return edges;
+        }
+
+        /**
+         * A cursor which binds those of its slots which are unbound when it is opened
+         */
+        private abstract class BindingCursor implements Cursor {
+            private final int[] free;
+            private int freeCount;
+
+            private BindingCursor(final int slots) {
+                free = new int[slots];
+            }
+
+            void findFreeSlots(final int... slots) {
+                freeCount = 0;
+                for (int slot : slots) {
+                    if (slot >= 0 && null == row[slot]) {
+                        free[freeCount++] = slot;
+                    }
+                }
+            }
+
+            boolean bind(final int slot, final Object value) {
+                if (!isFree(slot)) {
+                    return true;
+                }
+
+                // a variable may occur more than once in the same step
+                if (null != row[slot]) {
+                    return row[slot].equals(value);
+                }
+                row[slot] = value;
+                return true;
+            }
+
+            private boolean isFree(final int slot) {
+                for (int i = 0; i < freeCount; i++) {
+                    if (free[i] == slot) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            void unbind() {
+                for (int i = 0; i < freeCount; i++) {
+                    row[free[i]] = null;
+                }
+            }
+        }
+
+        private class PatternCursor extends BindingCursor {
+            private final PatternStep step;
+            private Iterator<Edge> edges;
+
+            private PatternCursor(final PatternStep step) {
+                super(4);
+                this.step = step;
+            }
+
+            @Override
+            public boolean advance() {
+                if (null == edges) {
+                    open();
+                }
+
+                while (edges.hasNext()) {
+                    if (bind(edges.next())) {
+                        return true;
+                    }
+                }
+
+                unbind();
+                edges = null;
+                return false;
+            }
+
+            private void open() {
+                findFreeSlots(step.subject, step.predicate, step.object, step.context);
+
+                if ((null != step.range || null != step.text)
+                        && null == row[step.subject] && null == row[step.object]) {
+                    AccessPlan plan = dataStore.planAccess(null, (String) row[step.predicate], null, null);
+                    Iterator<Edge> indexed = getIndexedEdges(step, (String) row[step.predicate],
+                            plan.getEstimatedCost());
+                    edges = null != indexed ? indexed : dataStore.getEdges(plan);
+                    return;
+                }
+
+                Object context = step.context < 0 ? null : row[step.context];
+                edges = dataStore.getEdges(dataStore.planAccess(
+                        (Vertex) row[step.subject],
+                        (String) row[step.predicate],
+                        (Vertex) row[step.object],
+                        null == context ? null : Collections.singleton((String) context)));
+            }
+
+            // bound positions have already been matched by the access plan
+            private boolean bind(final Edge edge) {
+                unbind();
+
+                String context = null;
+                if (step.namedContextsOnly) {
+                    context = dataStore.getContextValue(edge);
+                    if (null == context) {
+                        return false;
+                    }
+                }
+
+                return bind(step.subject, edge.outVertex())
+                        && bind(step.predicate, edge.label())
+                        && bind(step.object, edge.inVertex())
+                        && (step.context < 0 || bind(step.context, context));
+            }
+        }
+
+        private class StarCursor extends BindingCursor {
+            private final StarStep step;
+            private final String[] labels;
+            private String[] distinctLabels;
+            private final List<List<Edge>> buckets = new ArrayList<>();
+            private Iterator<Vertex> subjects;
+            private Vertex subject;
+            // the current combination of one edge from each bucket, or null before the first
+            private int[] positions;
+
+            private StarCursor(final StarStep step) {
+                super(1 + step.objects.length);
+                this.step = step;
+                labels = new String[step.predicates.length];
+                for (int i = 0; i < labels.length; i++) {
+                    buckets.add(new ArrayList<>());
+                }
+            }
+
+            @Override
+            public boolean advance() {
+                if (null == subjects) {
+                    open();
+                }
+
+                while (true) {
+                    if (null != subject) {
+                        while (nextCombination()) {
+                            if (bindCombination()) {
+                                return true;
+                            }
+                        }
+                    }
+
+                    if (!subjects.hasNext()) {
+                        unbind();
+                        subjects = null;
+                        subject = null;
+                        return false;
+                    }
+                    scan(subjects.next());
+                }
+            }
+
+            private void open() {
+                int[] slots = Arrays.copyOf(step.objects, step.objects.length + 1);
+                slots[step.objects.length] = step.subject;
+                findFreeSlots(slots);
+                for (int i = 0; i < labels.length; i++) {
+                    labels[i] = (String) row[step.predicates[i]];
+                }
+                // a label given more than once would yield its edges more than once
+                distinctLabels = new LinkedHashSet<>(Arrays.asList(labels)).toArray(new String[0]);
+
+                Vertex bound = (Vertex) row[step.subject];
+                subjects = null == bound ? findSubjects() : Collections.singleton(bound).iterator();
+            }
+
+            // the distinct subjects of the cheapest of the patterns, or of a range of one of them
+            private Iterator<Vertex> findSubjects() {
+                AccessPlan cheapest = null;
+                for (int i = 0; i < labels.length; i++) {
+                    AccessPlan plan = dataStore.planAccess(null, labels[i], (Vertex) row[step.objects[i]], null);
+                    if (null == cheapest || plan.getEstimatedCost() < cheapest.getEstimatedCost()) {
+                        cheapest = plan;
+                    }
+                }
+
+                Iterator<Edge> edges = null;
+                for (int i = 0; i < labels.length && null == edges; i++) {
+                    if (null == row[step.objects[i]]) {
+                        edges = getIndexedEdges(step.patterns.get(i), labels[i], cheapest.getEstimatedCost());
+                    }
+                }
+                if (null == edges) {
+                    edges = dataStore.getEdges(cheapest);
+                }
+
+                Set<Vertex> distinct = new HashSet<>();
+                return Iterators.filter(Iterators.transform(edges, Edge::outVertex), distinct::add);
+            }
+
+            // groups the out-edges of the subject by pattern, in a single scan
+            private void scan(final Vertex next) {
+                unbind();
+                subject = next;
+                positions = null;
+                for (List<Edge> bucket : buckets) {
+                    bucket.clear();
+                }
+
+                Iterator<Edge> edges = dataStore.getAdjacentEdges(subject, Direction.OUT, distinctLabels);
+                while (edges.hasNext()) {
+                    Edge edge = edges.next();
+                    for (int i = 0; i < labels.length; i++) {
+                        Object object = row[step.objects[i]];
+                        if (labels[i].equals(edge.label()) && (null == object || object.equals(edge.inVertex()))) {
+                            buckets.get(i).add(edge);
+                        }
+                    }
+                }
+
+                for (List<Edge> bucket : buckets) {
+                    if (bucket.isEmpty()) {
+                        subject = null;
+                        return;
+                    }
+                }
+            }
+
+            private boolean nextCombination() {
+                if (null == positions) {
+                    positions = new int[labels.length];
+                    return true;
+                }
+
+                for (int i = positions.length - 1; i >= 0; i--) {
+                    if (++positions[i] < buckets.get(i).size()) {
+                        return true;
+                    }
+                    positions[i] = 0;
+                }
+                return false;
+            }
+
+            private boolean bindCombination() {
+                unbind();
+                if (!bind(step.subject, subject)) {
+                    return false;
+                }
+                for (int i = 0; i < labels.length; i++) {
+                    if (!bind(step.objects[i], buckets.get(i).get(positions[i]).inVertex())) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+
+        private class FilterCursor implements Cursor {
+            private final FilterStep step;
+            private boolean accepted;
+
+            private FilterCursor(final FilterStep step) {
+                this.step = step;
+            }
+
+            @Override
+            public boolean advance() {
+                // a filter matches at most once per set of bindings
+                if (accepted) {
+                    accepted = false;
+                } else {
+                    accepted = accept();
+                }
+                return accepted;
+            }
+
+            private boolean accept() {
+                QueryBindingSet scope = new QueryBindingSet();
+                for (String name : step.names) {
+                    Value value = getValue(dataStore, bindings, row, name);
+                    if (null != value) {
+                        scope.addBinding(name, value);
+                    }
+                }
+
+                try {
+                    return strategy.isTrue(step.condition, scope);
+                } catch (ValueExprEvaluationException e) {
+                    // failed to evaluate condition
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * A solution of the walk, which creates the values of its bindings as they are requested
+     */
+    private class Solution extends AbstractBindingSet {
+        private static final long serialVersionUID = -4418630922757182315L;
+
+        private final DataStore dataStore;
+        private final BindingSet bindings;
+        private final Object[] row;
+
+        private Solution(final DataStore dataStore, final BindingSet bindings, final Object[] row) {
+            this.dataStore = dataStore;
+            this.bindings = bindings;
+            this.row = row;
+        }
+
+        @Override
+        public Iterator<Binding> iterator() {
+            List<Binding> all = new LinkedList<>();
+            for (String name : getBindingNames()) {
+                all.add(getBinding(name));
+            }
+            return all.iterator();
+        }
+
+        @Override
+        public Set<String> getBindingNames() {
+            Set<String> names = new LinkedHashSet<>(bindings.getBindingNames());
+            for (Map.Entry<String, Integer> e : slotsByName.entrySet()) {
+                if (null != row[e.getValue()]) {
+                    names.add(e.getKey());
+                }
+            }
+            return names;
+        }
+
+        @Override
+        public Binding getBinding(final String name) {
+            Value value = getValue(name);
+            return null == value ? null : new SimpleBinding(name, value);
+        }
+
+        @Override
+        public boolean hasBinding(final String name) {
+            if (bindings.hasBinding(name)) {
+                return true;
+            }
+            Integer slot = slotsByName.get(name);
+            return null != slot && null != row[slot];
+        }
+
+        @Override
+        public Value getValue(final String name) {
+            return BasicGraphPattern.this.getValue(dataStore, bindings, row, name);
+        }
+
+        @Override
+        public int size() {
+            return getBindingNames().size();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package net.fortytwo.tpop.sail;
+
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.LookAheadIteration;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A join which evaluates its right-hand side once for each solution of its left-hand side, as the standard
+ * JoinIterator does, but which takes the left-hand solutions in batches.
+ * A right-hand basic graph pattern is compiled only once, and the values bound by each batch are resolved to
+ * vertices all at once. Any other right-hand expression is evaluated through the evaluation strategy.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+class BatchedBindJoin extends LookAheadIteration<BindingSet, QueryEvaluationException> {
+    static final int BATCH_SIZE = 256;
+
+    private final DataStore dataStore;
+    private final EvaluationStrategy strategy;
+    private final CloseableIteration<BindingSet, QueryEvaluationException> left;
+    private final BasicGraphPattern right;
+    private final TupleExpr rightExpr;
+
+    private final List<BindingSet> batch = new ArrayList<>(BATCH_SIZE);
+    private int batchPosition;
+    private Map<Value, Vertex> vertices;
+    private CloseableIteration<BindingSet, QueryEvaluationException> current;
+
+    BatchedBindJoin(final DataStore dataStore,
+                    final EvaluationStrategy strategy,
+                    final CloseableIteration<BindingSet, QueryEvaluationException> left,
+                    final BasicGraphPattern right) {
+        this.dataStore = dataStore;
+        this.strategy = strategy;
+        this.left = left;
+        this.right = right;
+        this.rightExpr = null;
+    }
+
+    BatchedBindJoin(final EvaluationStrategy strategy,
+                    final CloseableIteration<BindingSet, QueryEvaluationException> left,
+                    final TupleExpr right) {
+        this.dataStore = null;
+        this.strategy = strategy;
+        this.left = left;
+        this.right = null;
+        this.rightExpr = right;
+    }
+
+    @Override
+    protected BindingSet getNextElement() throws QueryEvaluationException {
+        while (true) {
+            if (null != current) {
+                if (current.hasNext()) {
+                    return current.next();
+                }
+                current.close();
+                current = null;
+            }
+
+            if (batchPosition < batch.size()) {
+                BindingSet bindings = batch.get(batchPosition++);
+                current = null == right
+                        ? strategy.evaluate(rightExpr, bindings)
+                        : right.evaluate(dataStore, strategy, bindings, vertices);
+            } else if (!nextBatch()) {
+                return null;
+            }
+        }
+    }
+
+    private boolean nextBatch() {
+        batch.clear();
+        batchPosition = 0;
+        while (batch.size() < BATCH_SIZE && left.hasNext()) {
+            batch.add(left.next());
+        }
+
+        if (null != right) {
+            Set<Value> values = new HashSet<>();
+            for (BindingSet bindings : batch) {
+                values.addAll(right.getVertexValues(bindings));
+            }
+            vertices = dataStore.getVerticesByValue(values);
+        }
+
+        return !batch.isEmpty();
+    }
+
+    @Override
+    protected void handleClose() throws QueryEvaluationException {
+        try {
+            super.handleClose();
+        } finally {
+            try {
+                if (null != current) {
+                    current.close();
+                }
+            } finally {
+                left.close();
+            }
+        }
+    }
+}
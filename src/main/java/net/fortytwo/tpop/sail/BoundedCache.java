@@ -0,0 +1,305 @@
+package net.fortytwo.tpop.sail;
+
+import com.google.common.base.Preconditions;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A size-bounded, frequency-aware cache following the W-TinyLFU design:
+ * new entries enter a small LRU window, and an entry evicted from the window is admitted into the main
+ * (segmented LRU) region only if it has been requested more often than the main region's eviction victim,
+ * as estimated by a compact count-min sketch.
+ * This keeps one-off values, such as the unique subjects of a bulk load, from flushing out hot values.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+class BoundedCache<K, V> {
+    private static final double WINDOW_RATIO = 0.01;
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private final int capacity;
+    private final int windowCapacity;
+    private final int protectedCapacity;
+
+    private final Map<K, Node<K, V>> nodes = new HashMap<>();
+    private final Queue<K, V> window = new Queue<>(Region.WINDOW);
+    private final Queue<K, V> probation = new Queue<>(Region.PROBATION);
+    private final Queue<K, V> protectedQueue = new Queue<>(Region.PROTECTED);
+    private final FrequencySketch<K> sketch;
+
+    private long hits;
+    private long misses;
+
+    BoundedCache(final int capacity) {
+        Preconditions.checkArgument(capacity >= 0);
+
+        this.capacity = capacity;
+        this.windowCapacity = Math.max(1, (int) (capacity * WINDOW_RATIO));
+        int mainCapacity = Math.max(0, capacity - windowCapacity);
+        this.protectedCapacity = (int) (mainCapacity * PROTECTED_RATIO);
+        this.sketch = new FrequencySketch<>(capacity);
+    }
+
+    synchronized V get(final K key) {
+        if (0 == capacity) {
+            misses++;
+            return null;
+        }
+
+        sketch.increment(key);
+        Node<K, V> node = nodes.get(key);
+        if (null == node) {
+            misses++;
+            return null;
+        }
+
+        hits++;
+        onHit(node);
+        return node.value;
+    }
+
+    synchronized void put(final K key, final V value) {
+        Preconditions.checkNotNull(key);
+        Preconditions.checkNotNull(value);
+        if (0 == capacity) {
+            return;
+        }
+
+        Node<K, V> node = nodes.get(key);
+        if (null != node) {
+            node.value = value;
+            onHit(node);
+            return;
+        }
+
+        node = new Node<>(key, value);
+        nodes.put(key, node);
+        window.addLast(node);
+        if (window.size > windowCapacity) {
+            evictFromWindow();
+        }
+    }
+
+    synchronized void invalidate(final K key) {
+        Node<K, V> node = nodes.remove(key);
+        if (null != node) {
+            queueOf(node).remove(node);
+        }
+    }
+
+    synchronized int size() {
+        return nodes.size();
+    }
+
+    synchronized CacheStatistics getStatistics() {
+        return new CacheStatistics(hits, misses, nodes.size(), capacity);
+    }
+
+    private void onHit(final Node<K, V> node) {
+        switch (node.region) {
+            case WINDOW:
+                window.moveToLast(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                protectedQueue.addLast(node);
+                if (protectedQueue.size > protectedCapacity) {
+                    Node<K, V> demoted = protectedQueue.removeFirst();
+                    probation.addLast(demoted);
+                }
+                break;
+            case PROTECTED:
+                protectedQueue.moveToLast(node);
+                break;
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    private void evictFromWindow() {
+        Node<K, V> candidate = window.removeFirst();
+        if (probation.size + protectedQueue.size + 1 <= capacity - windowCapacity) {
+            probation.addLast(candidate);
+            return;
+        }
+
+        Node<K, V> victim = null != probation.head ? probation.head : protectedQueue.head;
+        if (null == victim) {
+            nodes.remove(candidate.key);
+            return;
+        }
+
+        if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+            queueOf(victim).remove(victim);
+            nodes.remove(victim.key);
+            probation.addLast(candidate);
+        } else {
+            nodes.remove(candidate.key);
+        }
+    }
+
+    private Queue<K, V> queueOf(final Node<K, V> node) {
+        switch (node.region) {
+            case WINDOW:
+                return window;
+            case PROBATION:
+                return probation;
+            case PROTECTED:
+                return protectedQueue;
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    private enum Region {WINDOW, PROBATION, PROTECTED}
+
+    private static class Node<K, V> {
+        private final K key;
+        private V value;
+        private Region region;
+        private Node<K, V> previous;
+        private Node<K, V> next;
+
+        private Node(final K key, final V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    // a doubly-linked LRU queue; the head is the least recently used node
+    private static class Queue<K, V> {
+        private final Region region;
+        private Node<K, V> head;
+        private Node<K, V> tail;
+        private int size;
+
+        private Queue(final Region region) {
+            this.region = region;
+        }
+
+        private void addLast(final Node<K, V> node) {
+            node.region = region;
+            node.previous = tail;
+            node.next = null;
+            if (null == tail) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            size++;
+        }
+
+        private void remove(final Node<K, V> node) {
+            if (null == node.previous) {
+                head = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+            if (null == node.next) {
+                tail = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+            node.previous = null;
+            node.next = null;
+            size--;
+        }
+
+        private Node<K, V> removeFirst() {
+            Node<K, V> first = head;
+            remove(first);
+            return first;
+        }
+
+        private void moveToLast(final Node<K, V> node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+
+    /**
+     * A count-min sketch of 4-bit counters, periodically halved so that the estimated frequencies
+     * reflect recent rather than all-time popularity.
+     */
+    private static class FrequencySketch<K> {
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int additions;
+
+        private FrequencySketch(final int capacity) {
+            int length = Math.max(8, ceilingPowerOfTwo(Math.max(1, capacity)));
+            table = new long[length];
+            tableMask = length - 1;
+            sampleSize = 10 * Math.max(1, capacity);
+        }
+
+        private int frequency(final K key) {
+            int hash = spread(key.hashCode());
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                frequency = Math.min(frequency, counterAt(indexOf(hash, i), counterOffset(hash, i)));
+            }
+            return frequency;
+        }
+
+        private void increment(final K key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                added |= incrementAt(indexOf(hash, i), counterOffset(hash, i));
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        private int counterAt(final int index, final int offset) {
+            return (int) ((table[index] >>> (offset << 2)) & 0xfL);
+        }
+
+        private boolean incrementAt(final int index, final int offset) {
+            int shift = offset << 2;
+            long mask = 0xfL << shift;
+            if ((table[index] & mask) != mask) {
+                table[index] += 1L << shift;
+                return true;
+            }
+            return false;
+        }
+
+        private void reset() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions /= 2;
+        }
+
+        private int indexOf(final int hash, final int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return ((int) h) & tableMask;
+        }
+
+        private int counterOffset(final int hash, final int i) {
+            return ((hash >>> (i << 3)) & 3) << 2 | i;
+        }
+
+        private static int spread(final int hashCode) {
+            int h = hashCode * 0x9e3779b9;
+            return h ^ (h >>> 16);
+        }
+
+        private static int ceilingPowerOfTwo(final int x) {
+            return 1 << (32 - Integer.numberOfLeadingZeros(x - 1));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package net.fortytwo.tpop.sail;
+
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.eclipse.rdf4j.model.Value;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The state of a bulk load in progress.
+ * Every value resolved during the load is remembered for the duration of the load, so each distinct value
+ * costs at most one index lookup, while work which does not affect the loaded edges themselves
+ * (vertex index maintenance and duplicate elimination) is deferred until the end of the load.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+class BulkLoad {
+    private final long startTime = System.currentTimeMillis();
+    private final boolean trackEdges;
+
+    private final Map<Value, Vertex> resolvedVertices = new ConcurrentHashMap<>();
+    private final Set<Vertex> unindexedVertices = new LinkedHashSet<>();
+    private final Set<Edge> addedEdges = new LinkedHashSet<>();
+    private long statementsAdded;
+    private long verticesCreated;
+
+    /**
+     * @param trackEdges whether to remember the added edges, for duplicate elimination at the end of the load
+     */
+    BulkLoad(final boolean trackEdges) {
+        this.trackEdges = trackEdges;
+    }
+
+    Vertex getResolvedVertex(final Value value) {
+        return resolvedVertices.get(value);
+    }
+
+    void vertexResolved(final Value value, final Vertex vertex) {
+        resolvedVertices.put(value, vertex);
+    }
+
+    void vertexUnresolved(final Value value, final Vertex vertex) {
+        resolvedVertices.remove(value, vertex);
+    }
+
+    void vertexCreated(final Vertex vertex) {
+        unindexedVertices.add(vertex);
+        verticesCreated++;
+    }
+
+    void vertexDeleted(final Value value, final Vertex vertex) {
+        resolvedVertices.remove(value);
+        unindexedVertices.remove(vertex);
+    }
+
+    void edgeAdded(final Edge edge) {
+        if (trackEdges) {
+            addedEdges.add(edge);
+        }
+        statementsAdded++;
+    }
+
+    void edgeRemoved(final Edge edge) {
+        addedEdges.remove(edge);
+    }
+
+    Set<Vertex> getUnindexedVertices() {
+        return unindexedVertices;
+    }
+
+    Set<Edge> getAddedEdges() {
+        return addedEdges;
+    }
+
+    BulkLoadReport createReport(final long duplicatesRemoved) {
+        return new BulkLoadReport(statementsAdded, duplicatesRemoved, verticesCreated,
+                System.currentTimeMillis() - startTime);
+    }
+}
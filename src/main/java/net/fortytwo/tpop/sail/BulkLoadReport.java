@@ -0,0 +1,63 @@
+package net.fortytwo.tpop.sail;
+
+/**
+ * A summary of a completed GraphSail bulk load
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+public class BulkLoadReport {
+    private final long statementsAdded;
+    private final long duplicatesRemoved;
+    private final long verticesCreated;
+    private final long elapsedMillis;
+
+    BulkLoadReport(final long statementsAdded,
+                   final long duplicatesRemoved,
+                   final long verticesCreated,
+                   final long elapsedMillis) {
+        this.statementsAdded = statementsAdded;
+        this.duplicatesRemoved = duplicatesRemoved;
+        this.verticesCreated = verticesCreated;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return the number of statements added during the load, including any duplicates later removed
+     */
+    public long getStatementsAdded() {
+        return statementsAdded;
+    }
+
+    /**
+     * @return the number of duplicate statements removed at the end of the load,
+     * if unique statements are enforced
+     */
+    public long getDuplicatesRemoved() {
+        return duplicatesRemoved;
+    }
+
+    /**
+     * @return the number of new value vertices created during the load
+     */
+    public long getVerticesCreated() {
+        return verticesCreated;
+    }
+
+    /**
+     * @return the time between the beginning and the end of the load, including deferred index maintenance
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public double getStatementsPerSecond() {
+        return 0 == elapsedMillis ? statementsAdded * 1000.0 : statementsAdded * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkLoadReport{statementsAdded=" + statementsAdded + ", duplicatesRemoved=" + duplicatesRemoved
+                + ", verticesCreated=" + verticesCreated + ", elapsedMillis=" + elapsedMillis
+                + ", statementsPerSecond=" + Math.round(getStatementsPerSecond()) + "}";
+    }
+}
@@ -0,0 +1,47 @@
+package net.fortytwo.tpop.sail;
+
+/**
+ * A point-in-time snapshot of the hit and miss counters of one of GraphSail's internal caches
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+public class CacheStatistics {
+    private final long hits;
+    private final long misses;
+    private final int size;
+    private final int capacity;
+
+    CacheStatistics(final long hits, final long misses, final int size, final int capacity) {
+        this.hits = hits;
+        this.misses = misses;
+        this.size = size;
+        this.capacity = capacity;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public double getHitRate() {
+        long requests = hits + misses;
+        return 0 == requests ? 0.0 : ((double) hits) / requests;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStatistics{hits=" + hits + ", misses=" + misses + ", size=" + size
+                + ", capacity=" + capacity + "}";
+    }
+}
@@ -0,0 +1,112 @@
+package net.fortytwo.tpop.sail;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Longs;
+
+/**
+ * A counting Bloom filter over keys made of one or more strings, which answers definite negatives
+ * ("this key was never added, or has since been removed") without consulting the graph.
+ * Each position holds an 8-bit counter rather than a single bit, so that keys may also be removed.
+ * A counter which reaches its maximum sticks there and is never decremented, which errs only on the side of
+ * false positives.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+class CountingBloomFilter {
+    private static final int MAX_COUNT = 0xFF;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final byte[] counters;
+    private final int numHashFunctions;
+
+    private long entries;
+    private long queries;
+    private long negatives;
+
+    /**
+     * @param expectedEntries          the number of keys the filter is expected to hold at any one time
+     * @param falsePositiveProbability the desired probability of a false positive at the expected number of keys
+     */
+    CountingBloomFilter(final long expectedEntries, final double falsePositiveProbability) {
+        Preconditions.checkArgument(expectedEntries > 0);
+        Preconditions.checkArgument(falsePositiveProbability > 0 && falsePositiveProbability < 1);
+
+        long size = (long) Math.ceil(
+                -expectedEntries * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        Preconditions.checkArgument(size <= Integer.MAX_VALUE, "filter too large");
+        counters = new byte[(int) size];
+        numHashFunctions = Math.max(1, (int) Math.round(((double) size) / expectedEntries * Math.log(2)));
+    }
+
+    synchronized void add(final String... key) {
+        long[] hashes = hash(key);
+        for (int i = 0; i < numHashFunctions; i++) {
+            int index = index(hashes, i);
+            int count = counters[index] & MAX_COUNT;
+            if (count < MAX_COUNT) {
+                counters[index] = (byte) (count + 1);
+            }
+        }
+        entries++;
+    }
+
+    synchronized void remove(final String... key) {
+        long[] hashes = hash(key);
+        for (int i = 0; i < numHashFunctions; i++) {
+            int index = index(hashes, i);
+            int count = counters[index] & MAX_COUNT;
+            if (count > 0 && count < MAX_COUNT) {
+                counters[index] = (byte) (count - 1);
+            }
+        }
+        entries--;
+    }
+
+    /**
+     * @return false if the key is definitely absent, or true if it may be present
+     */
+    synchronized boolean mightContain(final String... key) {
+        queries++;
+        long[] hashes = hash(key);
+        for (int i = 0; i < numHashFunctions; i++) {
+            if (0 == counters[index(hashes, i)]) {
+                negatives++;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    synchronized FilterStatistics getStatistics() {
+        // the standard approximation, for the current number of keys
+        double falsePositiveRate = Math.pow(
+                1 - Math.exp(-((double) numHashFunctions) * entries / counters.length), numHashFunctions);
+        return new FilterStatistics(entries, queries, negatives, falsePositiveRate, counters.length);
+    }
+
+    private int index(final long[] hashes, final int i) {
+        // combine two hash values to simulate any number of hash functions
+        long combined = hashes[0] + i * hashes[1];
+        return (int) ((combined & Long.MAX_VALUE) % counters.length);
+    }
+
+    private long[] hash(final String... key) {
+        Hasher hasher = HASH_FUNCTION.newHasher();
+        for (String part : key) {
+            if (null == part) {
+                hasher.putByte((byte) 0);
+            } else {
+                hasher.putByte((byte) 1).putString(part, Charsets.UTF_8).putByte((byte) 0);
+            }
+        }
+        byte[] bytes = hasher.hash().asBytes();
+        return new long[]{
+                Longs.fromBytes(bytes[7], bytes[6], bytes[5], bytes[4], bytes[3], bytes[2], bytes[1], bytes[0]),
+                Longs.fromBytes(bytes[15], bytes[14], bytes[13], bytes[12], bytes[11], bytes[10], bytes[9], bytes[8])};
+    }
+}
@@ -1,5 +1,8 @@
 package net.fortytwo.tpop.sail;
 
+import com.google.common.collect.Iterators;
+import com.google.common.collect.MapMaker;
+import com.google.common.util.concurrent.Striped;
 import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
 import org.apache.tinkerpop.gremlin.structure.Direction;
 import org.apache.tinkerpop.gremlin.structure.Edge;
@@ -19,14 +22,40 @@ import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.model.vocabulary.RDF;
 import org.eclipse.rdf4j.sail.SailException;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.StampedLock;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * A context object which is shared between the Blueprints Sail and its connections.
+ * <p>
+ * Any number of readers may use the store concurrently with a single writer. Writes are serialized by the write lock
+ * of a StampedLock, and readers take no lock: the in-memory indices are concurrent, and the adjacency of vertices,
+ * which the graph does not guard against concurrent modification, is copied under an optimistic read which is
+ * retried under the read lock if a write intervenes. Index scans are weakly consistent: a scan may or may not
+ * include statements added or removed while it is in progress, but every statement it yields is one which was
+ * in the store during the scan, with the subject, object and context it had there, even if the statement has
+ * since been removed.
+ * <p>
+ * Writers resolve values to vertices in parallel, without locking. Only the creation and deletion of the vertex
+ * of a value are guarded, by one of a fixed set of locks striped by value, so that writers never create two vertices
+ * for the same value, nor delete a vertex which another writer is about to reuse. Modifications of the graph itself,
+ * which TinkerGraph does not support concurrently, are kept short and made under the write lock.
  *
  * @author Joshua Shinavier (http://fortytwo.net)
  */
@@ -38,23 +67,292 @@ class DataStore {
     private final NamespaceStore namespaces = new NamespaceStore();
     private final ValueFactory valueFactory = SimpleValueFactory.getInstance();
 
+    // predicates, datatypes and contexts are drawn from a vocabulary which is typically small
+    private static final int VOCABULARY_POOL_CAPACITY = 10000;
+
+    private final InternPool<String, IRI> vocabularyIRIs
+            = new InternPool<>(VOCABULARY_POOL_CAPACITY, valueFactory::createIRI);
+    private final InternPool<String, Resource> contextResources
+            = new InternPool<>(VOCABULARY_POOL_CAPACITY, this::toResource);
+
+    private final Function<String, GraphIndex> indexFactory;
     private final GraphIndex valueIndex;
+    // an optional composite index of literal vertices by value, datatype and language
+    private volatile GraphIndex literalIndex;
+    private final BoundedCache<Value, Vertex> vertexCache;
+    // values materialized from vertices, keyed by vertex id
+    private final BoundedCache<Object, Value> valueCache;
+    // the values of deleted vertices, for as long as a reader which found a vertex before its deletion holds it
+    private final Map<Vertex, Value> deletedValues = new MapMaker().weakKeys().makeMap();
+    // likewise, the contexts of removed edges in named graphs
+    private final Map<Edge, String> removedContexts = new MapMaker().weakKeys().makeMap();
+    private final EdgeIndex<String> predicateIndex = new EdgeIndex<>();
+    private final EdgeIndex<String> contextIndex = new EdgeIndex<>();
+    // statement edges by subject vertex id, predicate, object vertex id and context
+    private final EdgeIndex<List<Object>> statementIndex = new EdgeIndex<>();
+    // optional filters which answer definite negatives for values and statements without consulting the graph
+    private volatile CountingBloomFilter valueFilter;
+    private volatile CountingBloomFilter statementFilter;
+    // an optional index of statements by the native values of their literal objects
+    private volatile RangeIndex rangeIndex;
+    // an optional index of literal vertices by the text of their labels
+    private volatile TextIndex textIndex;
+    private final StatementCounters counters = new StatementCounters();
 
     private boolean uniqueStatements;
 
+    private volatile BulkLoad bulkLoad;
+
     private final SailChangedHelper sailChangedHelper;
 
+    private final StampedLock lock = new StampedLock();
+    // the thread which holds the write lock, and which may therefore read the graph directly
+    private volatile Thread writer;
+
+    private static final int VALUE_LOCK_STRIPES = 1024;
+
+    // guards the creation and deletion of the vertex of each value; always acquired before the write lock
+    private final Striped<Lock> valueLocks = Striped.lock(VALUE_LOCK_STRIPES);
+
     DataStore(final Graph graph,
               final boolean readOnly,
               final Function<String, GraphIndex> indexFactory,
+              final int vertexCacheCapacity,
               final SailChangedHelper sailChangedHelper) {
         this.graph = graph;
         this.traversal = graph.traversal();
         this.readOnly = readOnly;
         this.sailChangedHelper = sailChangedHelper;
+        this.indexFactory = indexFactory;
 
         valueIndex = indexFactory.apply(Schema.VertexProperties.VALUE);
         valueIndex.initialize();
+        vertexCache = new BoundedCache<>(vertexCacheCapacity);
+        valueCache = new BoundedCache<>(vertexCacheCapacity);
+        indexExistingStatements();
+    }
+
+    // the in-memory statement indices are not persistent, so they are rebuilt from any pre-existing edges
+    private void indexExistingStatements() {
+        Iterator<Edge> edges = graph.edges();
+        while (edges.hasNext()) {
+            indexStatement(edges.next());
+        }
+    }
+
+    private void indexStatement(final Edge edge) {
+        predicateIndex.add(edge.label(), edge);
+        contextIndex.add(getContextValue(edge), edge);
+        if (statementIndex.add(toStatementKey(edge), edge)) {
+            counters.distinctStatementAdded(getContextValue(edge));
+        }
+        counters.statementAdded(edge);
+        CountingBloomFilter filter = statementFilter;
+        if (null != filter) {
+            addToFilter(filter, edge);
+        }
+        RangeIndex ranges = rangeIndex;
+        if (null != ranges && hasLiteralObject(edge)) {
+            ranges.add(edge, (Literal) getObject(edge));
+        }
+    }
+
+    private void unindexStatement(final Edge edge) {
+        predicateIndex.remove(edge.label(), edge);
+        contextIndex.remove(getContextValue(edge), edge);
+        if (statementIndex.remove(toStatementKey(edge), edge)) {
+            counters.distinctStatementRemoved(getContextValue(edge));
+        }
+        counters.statementRemoved(edge);
+        CountingBloomFilter filter = statementFilter;
+        if (null != filter) {
+            String[] key = toFilterKey(edge);
+            filter.remove(key);
+            filter.remove(withoutContext(key));
+        }
+        RangeIndex ranges = rangeIndex;
+        if (null != ranges && hasLiteralObject(edge)) {
+            ranges.remove(edge, (Literal) getObject(edge));
+        }
+    }
+
+    private boolean hasLiteralObject(final Edge edge) {
+        return Schema.VertexLabel.Literal.name().equals(edge.inVertex().label());
+    }
+
+    /**
+     * Enables a composite index of literal vertices by value, datatype and language, which is requested from
+     * the index factory, and initialized (and, if necessary, populated from the graph) when enabled.
+     * Until then, literals are found through the value index alone.
+     */
+    void enableLiteralIndex() {
+        write(() -> {
+            if (null == literalIndex) {
+                GraphIndex literals = indexFactory.apply(Schema.CompositeKeys.LITERAL);
+                literals.initialize();
+                literalIndex = literals;
+            }
+        });
+    }
+
+    /**
+     * Enables an index of statements with numeric, xsd:dateTime and xsd:date objects, ordered by the values
+     * of their objects within each predicate. The index is populated from the graph when enabled,
+     * and thereafter maintained as statements are added and removed.
+     */
+    void enableRangeIndex() {
+        write(() -> {
+            if (null == rangeIndex) {
+                RangeIndex ranges = new RangeIndex();
+                getAllStatementEdges().forEachRemaining(edge -> {
+                    if (hasLiteralObject(edge)) {
+                        ranges.add(edge, (Literal) getObject(edge));
+                    }
+                });
+                rangeIndex = ranges;
+            }
+        });
+    }
+
+    /**
+     * Enables an n-gram index over the labels of literals, which is populated from the graph when enabled
+     * and thereafter maintained as literal vertices are created and deleted
+     */
+    void enableTextIndex() {
+        write(() -> {
+            if (null == textIndex) {
+                TextIndex text = new TextIndex();
+                graph.vertices().forEachRemaining(vertex -> {
+                    if (Schema.VertexLabel.Literal.name().equals(vertex.label())) {
+                        text.add(vertex, getValue(vertex));
+                    }
+                });
+                textIndex = text;
+            }
+        });
+    }
+
+    /**
+     * @param label the label of the edges, or null for edges of any label
+     * @param grams n-grams which must all occur in the label of an object, as produced by TextIndex.getGrams
+     * @return the statement edges whose objects are literals which may contain the n-grams,
+     * or null if the text index is not enabled
+     */
+    Iterator<Edge> getEdgesByText(final String label, final Set<String> grams) {
+        TextIndex text = textIndex;
+        if (null == text) {
+            return null;
+        }
+        return Iterators.concat(Iterators.transform(text.get(grams),
+                vertex -> null == label ? getAdjacentEdges(vertex, Direction.IN)
+                        : getAdjacentEdges(vertex, Direction.IN, label)));
+    }
+
+    /**
+     * @return an upper bound on the number of literals which may contain the n-grams,
+     * or -1 if the text index is not enabled
+     */
+    long countLiteralsByText(final Set<String> grams) {
+        TextIndex text = textIndex;
+        return null == text ? -1 : text.count(grams);
+    }
+
+    /**
+     * @return the statement edges with the given label whose objects may fall within the range,
+     * or null if the range index is not enabled
+     */
+    Iterator<Edge> getEdgesInRange(final String label, final RangeIndex.Range range) {
+        RangeIndex ranges = rangeIndex;
+        return null == ranges ? null : ranges.get(label, range);
+    }
+
+    /**
+     * @return the number of statement edges with the given label whose objects may fall within the range,
+     * counted up to the given limit, or -1 if the range index is not enabled
+     */
+    long countEdgesInRange(final String label, final RangeIndex.Range range, final long limit) {
+        RangeIndex ranges = rangeIndex;
+        return null == ranges ? -1 : ranges.count(label, range, limit);
+    }
+
+    /**
+     * Enables counting Bloom filters over stored values and statements, which are populated from the graph
+     * and thereafter maintained as statements are added and removed.
+     * Lookups of absent values, and of absent statements with a bound subject, predicate and object,
+     * are then answered without consulting the graph.
+     */
+    void enableMembershipFilters(final long expectedValues,
+                                 final long expectedStatements,
+                                 final double falsePositiveProbability) {
+        write(() -> {
+            CountingBloomFilter values = new CountingBloomFilter(expectedValues, falsePositiveProbability);
+            graph.vertices().forEachRemaining(vertex -> values.add(toFilterKey(toValue(vertex))));
+
+            // each statement is added both with and without its context
+            CountingBloomFilter statements
+                    = new CountingBloomFilter(2 * expectedStatements, falsePositiveProbability);
+            getAllStatementEdges().forEachRemaining(edge -> addToFilter(statements, edge));
+
+            valueFilter = values;
+            statementFilter = statements;
+        });
+    }
+
+    FilterStatistics getValueFilterStatistics() {
+        CountingBloomFilter filter = valueFilter;
+        return null == filter ? null : filter.getStatistics();
+    }
+
+    FilterStatistics getStatementFilterStatistics() {
+        CountingBloomFilter filter = statementFilter;
+        return null == filter ? null : filter.getStatistics();
+    }
+
+    private void addToFilter(final CountingBloomFilter filter, final Edge edge) {
+        String[] key = toFilterKey(edge);
+        filter.add(key);
+        filter.add(withoutContext(key));
+    }
+
+    private String[] toFilterKey(final Edge edge) {
+        return new String[]{toFilterKey(getSubject(edge)), edge.label(), toFilterKey(getObject(edge)),
+                getContextValue(edge)};
+    }
+
+    private String[] withoutContext(final String[] key) {
+        return Arrays.copyOf(key, 3);
+    }
+
+    private boolean mightContainStatement(final CountingBloomFilter filter,
+                                          final Resource subject,
+                                          final String label,
+                                          final Value object,
+                                          final Set<String> contextKeys) {
+        String subjectKey = toFilterKey(subject);
+        String objectKey = toFilterKey(object);
+        if (null == contextKeys) {
+            return filter.mightContain(subjectKey, label, objectKey);
+        }
+        for (String context : contextKeys) {
+            if (filter.mightContain(subjectKey, label, objectKey, context)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // a string which distinguishes a value from every other value, whatever its implementation
+    private String toFilterKey(final Value value) {
+        if (value instanceof Literal) {
+            Literal literal = (Literal) value;
+            return literal.getLanguage().isPresent()
+                    ? "\"" + literal.getLabel() + "\"@" + literal.getLanguage().get()
+                    : "\"" + literal.getLabel() + "\"^^" + literal.getDatatype().stringValue();
+        } else if (value instanceof BNode) {
+            return "_:" + value.stringValue();
+        } else {
+            return value.stringValue();
+        }
     }
 
     public Graph getGraph() {
@@ -69,33 +367,124 @@ class DataStore {
         return namespaces;
     }
 
-    private CloseableIteration<? extends Statement, SailException> getSubjectStatements(final Resource subject) {
-        // assuming all edges are statements
-        Vertex vertex = getVertexByValue(subject);
-        Iterator<Edge> edges = null == vertex
-                ? Collections.emptyIterator()
-                : vertex.edges(Direction.OUT);
-        return toStatements(edges);
+    // note: the null context is included if present among the given contexts
+    CloseableIteration<? extends Statement, SailException> getContextStatements(final Resource... contexts) {
+        return toStatements(getContextStatementEdges(contexts));
     }
 
-    private CloseableIteration<? extends Statement, SailException> getObjectStatements(final Value object) {
-        // assuming all edges are statements
-        Vertex vertex = getVertexByValue(object);
-        Iterator<Edge> edges = null == vertex
-                ? Collections.emptyIterator()
-                : vertex.edges(Direction.IN);
-        return toStatements(edges);
+    private Iterator<Edge> getContextStatementEdges(final Resource... contexts) {
+        return getContextEdges(toContextKeys(contexts));
+    }
+
+    private Iterator<Edge> getContextEdges(final Set<String> contextKeys) {
+        return Iterators.concat(Iterators.transform(contextKeys.iterator(), contextIndex::get));
+    }
+
+    /**
+     * @return the named graphs which currently contain at least one statement, excluding the default graph
+     */
+    CloseableIteration<? extends Resource, SailException> getContextIDs() {
+        Iterator<String> contexts = Iterators.filter(contextIndex.keys(), context -> null != context);
+        return IterUtils.toCloseableIteration(contexts, contextResources::intern);
     }
 
     CloseableIteration<? extends Statement, SailException> getAllStatements() {
         return toStatements(getAllStatementEdges());
     }
 
-    private Vertex getVertexByValue(final Value value) {
+    Vertex getVertexByValue(final Value value) {
         return getVertexByValue(value, findLabel(value));
     }
 
     private Vertex getVertexByValue(final Value value, final Schema.VertexLabel vertexLabel) {
+        CountingBloomFilter filter = valueFilter;
+        if (null != filter && !filter.mightContain(toFilterKey(value))) {
+            return null;
+        }
+
+        BulkLoad load = bulkLoad;
+        if (null != load) {
+            return getVertexByValue(value, vertexLabel, load);
+        }
+
+        Vertex cached = vertexCache.get(value);
+        if (null != cached) {
+            return cached;
+        }
+
+        Vertex vertex = findVertexByValue(value, vertexLabel);
+        if (null != vertex) {
+            vertexCache.put(value, vertex);
+            // the vertex may have been deleted, and evicted from the cache, since it was found
+            if (!isLive(vertex)) {
+                vertexCache.invalidate(value);
+            }
+        }
+        return vertex;
+    }
+
+    private boolean isLive(final Vertex vertex) {
+        return graph.vertices(vertex.id()).hasNext();
+    }
+
+    // removes a stale resolution of a value to its vertex, which has since been deleted
+    private void forget(final Value value, final Vertex vertex) {
+        vertexCache.invalidate(value);
+        BulkLoad load = bulkLoad;
+        if (null != load) {
+            load.vertexUnresolved(value, vertex);
+        }
+    }
+
+    /**
+     * Resolves a batch of values to their vertices, as for the bindings of a bind join.
+     * Each distinct value is looked up once, and only values which pass the membership filter and are not in the
+     * vertex cache reach the index. These are looked up individually, as TinkerGraph's indices only support
+     * lookups by equality, so that a single has(value, within(...)) traversal would scan all vertices.
+     *
+     * @return the vertex of each value, or no entry if the value is not in the graph
+     */
+    Map<Value, Vertex> getVerticesByValue(final Collection<? extends Value> values) {
+        Map<Value, Vertex> vertices = new HashMap<>();
+        for (Value value : values) {
+            if (!vertices.containsKey(value)) {
+                vertices.put(value, getVertexByValue(value));
+            }
+        }
+        vertices.values().removeIf(Objects::isNull);
+        return vertices;
+    }
+
+    // during a bulk load, each value is looked up at most once; the index may not yet contain new vertices
+    private Vertex getVertexByValue(final Value value, final Schema.VertexLabel vertexLabel, final BulkLoad load) {
+        Vertex vertex = load.getResolvedVertex(value);
+        if (null == vertex) {
+            vertex = vertexCache.get(value);
+            if (null == vertex) {
+                vertex = findVertexByValue(value, vertexLabel);
+            }
+            if (null != vertex) {
+                load.vertexResolved(value, vertex);
+                if (!isLive(vertex)) {
+                    load.vertexUnresolved(value, vertex);
+                }
+            }
+        }
+        return vertex;
+    }
+
+    private Vertex findVertexByValue(final Value value, final Schema.VertexLabel vertexLabel) {
+        GraphIndex literals = literalIndex;
+        if (null != literals && vertexLabel.equals(Schema.VertexLabel.Literal)) {
+            Literal literal = (Literal) value;
+            Iterator<Vertex> hits = literals.get(literal.getLabel(),
+                    literal.getDatatype().stringValue(), literal.getLanguage().orElse(null));
+            // fall back to a traversal if the index does not support direct lookups
+            if (null != hits) {
+                return hits.hasNext() ? hits.next() : null;
+            }
+        }
+
         Iterator<Vertex> hits = traversal.V()
                 .has(T.label, vertexLabel.name()).has(Schema.VertexProperties.VALUE, value.stringValue());
         while (hits.hasNext()) {
@@ -114,41 +503,114 @@ class DataStore {
     }
 
     boolean edgeExists(final Vertex outV, final Vertex inV, final String label, final String context) {
-        Iterator<Edge> edges = outV.edges(Direction.OUT, label);
-        while (edges.hasNext()) {
-            Edge next = edges.next();
-            if (!next.inVertex().equals(inV)) continue;
-            if (contextEquals(context, next)) {
-                return true;
+        return statementIndex.count(toStatementKey(outV, label, inV, context)) > 0;
+    }
+
+    private List<Object> toStatementKey(final Edge edge) {
+        return toStatementKey(edge.outVertex(), edge.label(), edge.inVertex(), getContextValue(edge));
+    }
+
+    private List<Object> toStatementKey(final Vertex outV, final String label, final Vertex inV, final String context) {
+        return Arrays.asList(outV.id(), label, inV.id(), context);
+    }
+
+    /**
+     * Adds a statement in each of the given contexts, or in the default graph if none are given,
+     * creating vertices for its subject and object as needed.
+     * Unless a bulk load is in progress, a statement which already exists is not added again if the unique
+     * statements policy is enforced.
+     */
+    void addStatement(final Resource subject, final IRI predicate, final Value object, final Resource... contexts) {
+        String label = predicate.stringValue();
+        Set<String> contextKeys = 0 == contexts.length ? Collections.singleton(null) : toContextKeys(contexts);
+        boolean added = false;
+        while (!added) {
+            Vertex subjectVertex = getOrCreateVertexByValue(subject);
+            Vertex objectVertex = getOrCreateVertexByValue(object);
+            added = write(() -> addResolvedStatement(subject, subjectVertex, label, object, objectVertex, contextKeys));
+        }
+    }
+
+    /**
+     * Adds a batch of statements whose subjects and objects have already been resolved to vertices,
+     * under a single acquisition of the write lock
+     *
+     * @return any statements which were not added because the vertex of their subject or object was deleted,
+     * by another writer, after it was resolved. These may be added again with addStatement.
+     */
+    List<Statement> addStatements(final List<ResolvedStatement> statements) {
+        List<Statement> notAdded = new ArrayList<>();
+        write(() -> {
+            for (ResolvedStatement resolved : statements) {
+                Statement st = resolved.statement;
+                Resource context = st.getContext();
+                if (!addResolvedStatement(st.getSubject(), resolved.subjectVertex, st.getPredicate().stringValue(),
+                        st.getObject(), resolved.objectVertex,
+                        Collections.singleton(toContextKey(context)))) {
+                    notAdded.add(st);
+                }
             }
+        });
+        return notAdded;
+    }
+
+    // called under the write lock; returns false if either vertex has been deleted since it was resolved
+    private boolean addResolvedStatement(final Value subject,
+                                         final Vertex subjectVertex,
+                                         final String label,
+                                         final Value object,
+                                         final Vertex objectVertex,
+                                         final Set<String> contextKeys) {
+        // another writer may have removed the last statement of a vertex, and the vertex with it,
+        // since the vertex was resolved, in which case its value is to be resolved again
+        boolean subjectIsLive = isLive(subjectVertex);
+        boolean objectIsLive = isLive(objectVertex);
+        if (!subjectIsLive || !objectIsLive) {
+            if (!subjectIsLive) {
+                forget(subject, subjectVertex);
+            }
+            if (!objectIsLive) {
+                forget(object, objectVertex);
+            }
+            return false;
         }
-        return false;
+
+        for (String context : contextKeys) {
+            // during a bulk load, duplicates are instead eliminated at the end of the load
+            if (uniqueStatements && null == bulkLoad && edgeExists(subjectVertex, objectVertex, label, context)) {
+                continue;
+            }
+
+            addStatementInternal(subjectVertex, objectVertex, label, context);
+        }
+        return true;
     }
 
-    Statement addStatementInternal(final Vertex outV, final Vertex inV, final String label, final String context) {
+    private void addStatementInternal(final Vertex outV, final Vertex inV, final String label, final String context) {
         Edge edge = outV.addEdge(label, inV);
         registerStatementAdded();
         if (null != context) {
             edge.property(Schema.EdgeProperties.CONTEXT, context);
         }
-        return toStatement(edge);
+        indexStatement(edge);
+        BulkLoad load = bulkLoad;
+        if (null != load) {
+            load.edgeAdded(edge);
+        }
     }
 
     private void registerStatementAdded() {
-        sailChangedHelper.statementsAdded = true;
+        sailChangedHelper.statementsAdded.set(true);
     }
 
     private void registerStatementRemoved() {
-        sailChangedHelper.statementsRemoved = true;
+        sailChangedHelper.statementsRemoved.set(true);
     }
 
-    private boolean contextEquals(final String expected, final Edge edge) {
-        Property<String> actual = edge.property(Schema.EdgeProperties.CONTEXT);
-        if (actual.isPresent()) {
-            return null != expected && actual.value().equals(expected);
-        } else {
-            return null == expected;
-        }
+    String getContextValue(final Edge edge) {
+        Property<String> prop = edge.property(Schema.EdgeProperties.CONTEXT);
+        // a removed edge has no properties, but its context is remembered
+        return prop.isPresent() ? prop.value() : removedContexts.get(edge);
     }
 
     private CloseableIteration<? extends Statement, SailException> toStatements(final Iterator<Edge> edges) {
@@ -176,29 +638,84 @@ class DataStore {
 
     private Vertex getOrCreateVertexByValue(final Value value, final Schema.VertexLabel vertexLabel) {
         Vertex vertex = getVertexByValue(value, vertexLabel);
-        if (null == vertex) {
-            vertex = createNewVertex(value, vertexLabel);
+        if (null != vertex) {
+            return vertex;
+        }
+
+        Lock valueLock = valueLocks.get(value);
+        valueLock.lock();
+        try {
+            // another writer may have created the vertex in the meantime
+            vertex = getVertexByValue(value, vertexLabel);
+            if (null == vertex) {
+                vertex = write(() -> createNewVertex(value, vertexLabel));
+                BulkLoad load = bulkLoad;
+                if (null == load) {
+                    vertexCache.put(value, vertex);
+                } else {
+                    load.vertexResolved(value, vertex);
+                }
+            }
+            return vertex;
+        } finally {
+            valueLock.unlock();
         }
-        return vertex;
     }
 
     private Vertex createNewVertex(final Value value, final Schema.VertexLabel vertexLabel) {
+        Vertex vertex;
         switch (vertexLabel) {
             case IRI:
-                return createNewIRIVertex(value);
+                vertex = createNewIRIVertex(value);
+                break;
             case BNode:
-                return createNewBNodeVertex(value);
+                vertex = createNewBNodeVertex(value);
+                break;
             case Literal:
-                return createNewLiteralVertex(value);
+                vertex = createNewLiteralVertex(value);
+                break;
             default:
                 throw new IllegalStateException();
         }
+
+        CountingBloomFilter filter = valueFilter;
+        if (null != filter) {
+            filter.add(toFilterKey(value));
+        }
+        TextIndex text = textIndex;
+        if (null != text && Schema.VertexLabel.Literal == vertexLabel) {
+            text.add(vertex, value.stringValue());
+        }
+
+        // index the vertex only once all of its properties have been set
+        BulkLoad load = bulkLoad;
+        if (null == load) {
+            addToIndices(vertex);
+        } else {
+            load.vertexCreated(vertex);
+        }
+        return vertex;
+    }
+
+    private void addToIndices(final Vertex vertex) {
+        valueIndex.add(vertex);
+        GraphIndex literals = literalIndex;
+        if (null != literals) {
+            literals.add(vertex);
+        }
+    }
+
+    private void removeFromIndices(final Vertex vertex) {
+        valueIndex.remove(vertex);
+        GraphIndex literals = literalIndex;
+        if (null != literals) {
+            literals.remove(vertex);
+        }
     }
 
     private Vertex createVertex(final String label, final Value value) {
         Vertex vertex = graph.addVertex(label);
         vertex.property(Schema.VertexProperties.VALUE, value.stringValue());
-        valueIndex.add(vertex);
         return vertex;
     }
 
@@ -232,38 +749,167 @@ class DataStore {
         }
     }
 
-    // note: for now, every edge in the graph is assumed to be a statement edge
+    // note: for now, every edge in the graph is assumed to be a statement edge.
+    // Edges are read from the predicate index, to which they are only added once complete
     private Iterator<Edge> getAllStatementEdges() {
-        return graph.edges();
+        return Iterators.concat(Iterators.transform(predicateIndex.keys(), predicateIndex::get));
+    }
+
+    // note: every vertex is the subject or object of some statement, as isolated vertices are removed,
+    // apart from a vertex which is about to receive its first statement, or to be deleted, and which is skipped
+    Iterator<Vertex> getAllStatementVertices() {
+        // a vertex is added to the graph before its properties are set, so even enumeration is read as a snapshot
+        return read(() -> Iterators.filter(graph.vertices(), vertex -> !isIsolated(vertex))).iterator();
+    }
+
+    /**
+     * @return a snapshot of the edges of the vertex in the given direction with any of the given labels,
+     * or with any label if none are given
+     */
+    Iterator<Edge> getAdjacentEdges(final Vertex vertex, final Direction direction, final String... labels) {
+        return read(() -> vertex.edges(direction, labels)).iterator();
+    }
+
+    /**
+     * @return a snapshot of the vertices adjacent to the vertex in the given direction, through edges with any of
+     * the given labels, or with any label if none are given
+     */
+    Iterator<Vertex> getAdjacentVertices(final Vertex vertex, final Direction direction, final String... labels) {
+        return read(() -> vertex.vertices(direction, labels)).iterator();
     }
 
-    private void removeEdgeCleanly(final Edge edge) {
-        Vertex outV = edge.outVertex();
-        Vertex inV = edge.inVertex();
+    // copies the elements of a traversal of the graph, retrying under the read lock if a write intervenes
+    private <T> List<T> read(final Supplier<Iterator<T>> traversal) {
+        if (Thread.currentThread() == writer) {
+            return copy(traversal.get());
+        }
+
+        long stamp = lock.tryOptimisticRead();
+        if (0 != stamp) {
+            try {
+                List<T> elements = copy(traversal.get());
+                if (lock.validate(stamp)) {
+                    return elements;
+                }
+            } catch (RuntimeException e) {
+                // the graph was modified during the traversal, which is repeated below
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return copy(traversal.get());
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private <T> List<T> copy(final Iterator<T> elements) {
+        List<T> list = new ArrayList<>();
+        elements.forEachRemaining(list::add);
+        return list;
+    }
+
+    private void write(final Runnable operation) {
+        write(() -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    // performs a write under the write lock, which is held only once by any thread
+    private <T> T write(final Supplier<T> operation) {
+        if (Thread.currentThread() == writer) {
+            return operation.get();
+        }
+
+        long stamp = lock.writeLock();
+        writer = Thread.currentThread();
+        try {
+            return operation.get();
+        } finally {
+            writer = null;
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void removeEdge(final Edge edge) {
+        unindexStatement(edge);
+        BulkLoad load = bulkLoad;
+        if (null != load) {
+            load.edgeRemoved(edge);
+        }
+        String context = getContextValue(edge);
+        if (null != context) {
+            removedContexts.put(edge, context);
+        }
         edge.remove();
-        removeIfIsolated(outV);
-        removeIfIsolated(inV);
     }
 
     void removeIteratorStatements(final CloseableIteration<? extends Statement, SailException> statements) {
-        while (statements.hasNext()) {
-            Statement next = statements.next();
-
-            // beware of ConcurrentModificationExceptions
-            removeEdgeCleanly(((GraphSailStatement) next).getEdge());
-            registerStatementRemoved();
+        // the statements are read before any is removed, which also avoids ConcurrentModificationExceptions
+        List<Edge> edges = new ArrayList<>();
+        try {
+            while (statements.hasNext()) {
+                edges.add(((GraphSailStatement) statements.next()).getEdge());
+            }
+        } finally {
+            statements.close();
         }
+
+        // the values of the removed statements, whose vertices may be left isolated
+        Set<Value> values = new LinkedHashSet<>();
+        write(() -> {
+            for (Edge edge : edges) {
+                // another writer may have removed the statement since it was read
+                if (predicateIndex.contains(edge.label(), edge)) {
+                    values.add(toValue(edge.outVertex()));
+                    values.add(toValue(edge.inVertex()));
+                    removeEdge(edge);
+                    registerStatementRemoved();
+                }
+            }
+        });
+
+        values.forEach(this::removeIfIsolated);
     }
 
-    private void removeIfIsolated(final Vertex toTest) {
-        if (isIsolated(toTest)) {
-            deleteVertex(toTest);
+    // deletes the vertex of the value if it is no longer the subject or object of any statement
+    void removeIfIsolated(final Value value) {
+        Lock valueLock = valueLocks.get(value);
+        valueLock.lock();
+        try {
+            write(() -> {
+                // the vertex may since have been reused, or deleted, by another writer
+                Vertex vertex = getVertexByValue(value);
+                if (null != vertex && isLive(vertex) && isIsolated(vertex)) {
+                    deleteVertex(vertex, value);
+                }
+            });
+        } finally {
+            valueLock.unlock();
         }
     }
 
-    private void deleteVertex(final Vertex toDelete) {
-        valueIndex.remove(toDelete);
+    private void deleteVertex(final Vertex toDelete, final Value value) {
+        deletedValues.put(toDelete, value);
+        CountingBloomFilter filter = valueFilter;
+        if (null != filter) {
+            filter.remove(toFilterKey(value));
+        }
+        TextIndex text = textIndex;
+        if (null != text && value instanceof Literal) {
+            text.remove(toDelete, value.stringValue());
+        }
+        BulkLoad load = bulkLoad;
+        if (null != load) {
+            load.vertexDeleted(value, toDelete);
+        }
+        removeFromIndices(toDelete);
         toDelete.remove();
+        // the caches are invalidated last, so that a reader cannot cache the vertex again once it has been removed
+        vertexCache.invalidate(value);
+        valueCache.invalidate(toDelete.id());
     }
 
     private boolean isIsolated(final Vertex toTest) {
@@ -274,6 +920,252 @@ class DataStore {
         return !iter.hasNext();
     }
 
+    long countAllStatements() {
+        return counters.getTotalStatements();
+    }
+
+    /**
+     * Counts the statements matching a pattern, as buildIterator would yield them, without materializing any.
+     * Where the access plan leaves nothing to check, the count is read from the maintained counters and indices;
+     * otherwise the planned edges are counted.
+     */
+    long count(final Resource subject, final IRI predicate, final Value object, final Resource... contexts) {
+        AccessPlan plan = planAccess(subject, predicate, object, contexts);
+        if (plan.getFilters().isEmpty()) {
+            long count = 0;
+            switch (plan.getPath()) {
+                case Empty:
+                    return 0;
+                case StatementIndex:
+                    for (String context : plan.contexts) {
+                        count += statementIndex.count(
+                                toStatementKey(plan.subjectVertex, plan.label, plan.objectVertex, context));
+                    }
+                    return count;
+                case SubjectEdges:
+                    if (!plan.isPredicatePushedDown()) {
+                        return counters.getOutDegree(plan.subjectVertex);
+                    }
+                    break;
+                case ObjectEdges:
+                    if (!plan.isPredicatePushedDown()) {
+                        return counters.getInDegree(plan.objectVertex);
+                    }
+                    break;
+                case PredicateIndex:
+                    return predicateIndex.count(plan.label);
+                case ContextIndex:
+                    for (String context : plan.contexts) {
+                        count += contextIndex.count(context);
+                    }
+                    return count;
+                case FullScan:
+                    return countAllStatements();
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+
+        return Iterators.size(getEdges(plan));
+    }
+
+    /**
+     * Counts the statements matching a pattern, grouped by the value at one of its unbound positions,
+     * without materializing any statements. Where the pattern is otherwise unbound, the sizes of the predicate
+     * and context indices are used directly.
+     *
+     * @param namedContextsOnly whether statements in the default graph are left out
+     * @return the number of statements for each distinct value at the grouped position,
+     * with a null context standing for the default graph
+     */
+    Map<Value, Long> groupCount(final Resource subject,
+                                final IRI predicate,
+                                final Value object,
+                                final AccessPlan.Position groupBy,
+                                final boolean namedContextsOnly,
+                                final Resource... contexts) {
+        Map<Object, Long> counts = new HashMap<>();
+        boolean unbound = null == subject && null == predicate && null == object && 0 == contexts.length;
+        if (unbound && AccessPlan.Position.Predicate == groupBy && !namedContextsOnly) {
+            predicateIndex.keys().forEachRemaining(label -> counts.put(label, predicateIndex.count(label)));
+        } else if (unbound && AccessPlan.Position.Context == groupBy) {
+            contextIndex.keys().forEachRemaining(context -> {
+                if (null != context || !namedContextsOnly) {
+                    counts.put(context, contextIndex.count(context));
+                }
+            });
+        } else {
+            Iterator<Edge> edges = getEdges(planAccess(subject, predicate, object, contexts));
+            while (edges.hasNext()) {
+                Edge edge = edges.next();
+                if (!namedContextsOnly || null != getContextValue(edge)) {
+                    counts.merge(getGroupKey(edge, groupBy), 1L, Long::sum);
+                }
+            }
+        }
+
+        // values are only created for the distinct groups
+        Map<Value, Long> result = new HashMap<>();
+        counts.forEach((key, count) -> {
+            if (count > 0) {
+                result.put(toGroupValue(key, groupBy), count);
+            }
+        });
+        return result;
+    }
+
+    private Object getGroupKey(final Edge edge, final AccessPlan.Position groupBy) {
+        switch (groupBy) {
+            case Subject:
+                return edge.outVertex();
+            case Predicate:
+                return edge.label();
+            case Object:
+                return edge.inVertex();
+            case Context:
+                return getContextValue(edge);
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    private Value toGroupValue(final Object key, final AccessPlan.Position groupBy) {
+        switch (groupBy) {
+            case Subject:
+            case Object:
+                return toValue((Vertex) key);
+            case Predicate:
+                return toPredicate((String) key);
+            case Context:
+                return null == key ? null : toContext((String) key);
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * @return the number of distinct statements in any of the given contexts, or in all contexts if none are given.
+     * Duplicate edges of the same statement, as allowed in the absence of the unique statements policy,
+     * are counted once.
+     */
+    long countDistinctStatements(final Resource... contexts) {
+        if (0 == contexts.length) {
+            return counters.getDistinctStatements();
+        }
+
+        long count = 0;
+        for (String context : toContextKeys(contexts)) {
+            count += counters.getDistinctStatements(context);
+        }
+        return count;
+    }
+
+    long countPredicateStatements(final IRI predicate) {
+        return predicateIndex.count(predicate.stringValue());
+    }
+
+    long countContextStatements(final Resource context) {
+        return contextIndex.count(toContextKey(context));
+    }
+
+    /**
+     * @return the number of statements with the given subject
+     */
+    long getOutDegree(final Value subject) {
+        Vertex vertex = getVertexByValue(subject);
+        return null == vertex ? 0 : counters.getOutDegree(vertex);
+    }
+
+    /**
+     * @return the number of statements with the given object
+     */
+    long getInDegree(final Value object) {
+        Vertex vertex = getVertexByValue(object);
+        return null == vertex ? 0 : counters.getInDegree(vertex);
+    }
+
+    long estimateDistinctSubjects(final IRI predicate) {
+        return counters.getDistinctSubjects(predicate.stringValue());
+    }
+
+    long estimateDistinctObjects(final IRI predicate) {
+        return counters.getDistinctObjects(predicate.stringValue());
+    }
+
+    CacheStatistics getVertexCacheStatistics() {
+        return vertexCache.getStatistics();
+    }
+
+    CacheStatistics getValueCacheStatistics() {
+        return valueCache.getStatistics();
+    }
+
+    void beginBulkLoad() {
+        write(() -> {
+            if (null != bulkLoad) {
+                throw new SailException("a bulk load is already in progress");
+            }
+            bulkLoad = new BulkLoad(uniqueStatements);
+        });
+    }
+
+    BulkLoadReport endBulkLoad() {
+        return write(() -> {
+            BulkLoad load = bulkLoad;
+            if (null == load) {
+                throw new SailException("no bulk load is in progress");
+            }
+
+            for (Vertex vertex : load.getUnindexedVertices()) {
+                addToIndices(vertex);
+            }
+            long duplicatesRemoved = uniqueStatements ? removeDuplicateStatements(load.getAddedEdges()) : 0;
+            bulkLoad = null;
+
+            return load.createReport(duplicatesRemoved);
+        });
+    }
+
+    boolean isBulkLoading() {
+        return null != bulkLoad;
+    }
+
+    // removes those of the given edges which duplicate another statement, giving precedence to other edges.
+    // The vertices of a duplicate remain in use by the statement it duplicates
+    private long removeDuplicateStatements(final Set<Edge> addedEdges) {
+        Set<List<Object>> visitedGroups = new HashSet<>();
+        List<Edge> duplicates = new LinkedList<>();
+        for (Edge added : addedEdges) {
+            Vertex outV = added.outVertex();
+            if (!visitedGroups.add(Arrays.asList(outV.id(), added.label()))) {
+                continue;
+            }
+
+            List<Edge> group = new LinkedList<>();
+            outV.edges(Direction.OUT, added.label()).forEachRemaining(group::add);
+            Set<List<Object>> statementKeys = new HashSet<>();
+            for (Edge edge : group) {
+                if (!addedEdges.contains(edge)) {
+                    statementKeys.add(toInVertexAndContext(edge));
+                }
+            }
+            for (Edge edge : group) {
+                if (addedEdges.contains(edge) && !statementKeys.add(toInVertexAndContext(edge))) {
+                    duplicates.add(edge);
+                }
+            }
+        }
+
+        for (Edge duplicate : duplicates) {
+            removeEdge(duplicate);
+        }
+        return duplicates.size();
+    }
+
+    private List<Object> toInVertexAndContext(final Edge edge) {
+        return Arrays.asList(edge.inVertex().id(), getContextValue(edge));
+    }
+
     ValueFactory getValueFactory() {
         return valueFactory;
     }
@@ -282,30 +1174,38 @@ class DataStore {
         return uniqueStatements;
     }
 
-    void setUniqueStatements(boolean uniqueStatements) {
-        this.uniqueStatements = uniqueStatements;
+    void setUniqueStatements(final boolean uniqueStatements) {
+        write(() -> {
+            // the edges of a bulk load are tracked for duplicate elimination only if the policy was on at its start
+            if (null != bulkLoad && uniqueStatements != this.uniqueStatements) {
+                throw new SailException("the unique statements policy cannot be changed during a bulk load");
+            }
+            this.uniqueStatements = uniqueStatements;
+        });
     }
 
     private Statement toStatement(final Edge edge) {
-        return new GraphSailStatement(edge,
-                getSubject(edge), getPredicate(edge), getObject(edge), getContext(edge));
+        return new GraphSailStatement(edge, getContextValue(edge), this);
     }
 
-    private Resource getSubject(final Edge edge) {
+    Resource getSubject(final Edge edge) {
         return toResource(edge.outVertex());
     }
 
-    private IRI getPredicate(final Edge edge) {
-        return toIRI(edge.label());
+    IRI getPredicate(final Edge edge) {
+        return toPredicate(edge.label());
     }
 
-    private Value getObject(final Edge edge) {
+    Value getObject(final Edge edge) {
         return toValue(edge.inVertex());
     }
 
-    private Resource getContext(final Edge edge) {
-        Property<String> prop = edge.property(Schema.EdgeProperties.CONTEXT);
-        return prop.isPresent() ? toResource(prop.value()) : null;
+    IRI toPredicate(final String label) {
+        return vocabularyIRIs.intern(label);
+    }
+
+    Resource toContext(final String contextValue) {
+        return contextResources.intern(contextValue);
     }
 
     private Resource toResource(final Vertex vertex) {
@@ -329,7 +1229,26 @@ class DataStore {
         }
     }
 
-    private Value toValue(final Vertex vertex) {
+    Value toValue(final Vertex vertex) {
+        Object id = vertex.id();
+        Value value = valueCache.get(id);
+        if (null == value) {
+            try {
+                value = createValue(vertex);
+            } catch (RuntimeException e) {
+                // the vertex has been deleted by a writer since it was read
+                value = deletedValues.get(vertex);
+                if (null == value) {
+                    throw e;
+                }
+                return value;
+            }
+            valueCache.put(id, value);
+        }
+        return value;
+    }
+
+    private Value createValue(final Vertex vertex) {
         Schema.VertexLabel kind = Schema.VertexLabel.valueOf(vertex.label());
         switch (kind) {
             case IRI:
@@ -348,7 +1267,8 @@ class DataStore {
     }
 
     private BNode toBNode(final Vertex vertex) {
-        return toBNode(getValue(vertex));
+        // the vertex holds the blank node's id, without any "_:" prefix
+        return valueFactory.createBNode(getValue(vertex));
     }
 
     private Literal toLiteral(final Vertex vertex) {
@@ -358,7 +1278,7 @@ class DataStore {
             String language = getLanguage(vertex);
             return valueFactory.createLiteral(value, language);
         } else {
-            IRI dt = valueFactory.createIRI(datatype);
+            IRI dt = vocabularyIRIs.intern(datatype);
             return valueFactory.createLiteral(value, dt);
         }
     }
@@ -380,126 +1300,211 @@ class DataStore {
                                                                          final IRI predicate,
                                                                          final Value object,
                                                                          final Resource... contexts) {
-        if (null != subject) {
-            return getStatementsBySubject(subject, predicate, object, contexts);
-        } else if (null != object) {
-            return getStatementsByObject(subject, predicate, object, contexts);
-        } else {
-            return getStatementsWithFullScan(subject, predicate, object, contexts);
-        }
+        return toStatements(getEdges(planAccess(subject, predicate, object, contexts)));
     }
 
-    private CloseableIteration<? extends Statement, SailException> getStatementsBySubject(
-            final Resource subject,
-            final IRI predicate,
-            final Value object,
-            final Resource... contexts) {
-
-        CloseableIteration<? extends Statement, SailException> iter = getSubjectStatements(subject);
-        if (null != object) {
-            iter = addObjectFilter(iter, object);
+    /**
+     * Chooses the cheapest access path for a statement pattern, considering every bound position.
+     * Costs are estimated from vertex degrees and index sizes; ties are broken in favor of
+     * subject, object, predicate and context access, in that order.
+     */
+    AccessPlan planAccess(final Resource subject,
+                          final IRI predicate,
+                          final Value object,
+                          final Resource... contexts) {
+        String label = null == predicate ? null : predicate.stringValue();
+        Set<String> contextKeys = contexts.length > 0 ? toContextKeys(contexts) : null;
+
+        CountingBloomFilter filter = statementFilter;
+        if (null != filter && null != subject && null != label && null != object
+                && !mightContainStatement(filter, subject, label, object, contextKeys)) {
+            return new AccessPlan(AccessPlan.Path.Empty, 0, null, null, label, contextKeys);
         }
-        if (null != predicate) {
-            iter = addPredicateFilter(iter, predicate);
-        }
-        if (contexts.length > 0) {
-            iter = addContextFilter(iter, contexts);
-        }
-        return iter;
-    }
 
-    private CloseableIteration<? extends Statement, SailException> getStatementsByObject(
-            final Resource subject,
-            final IRI predicate,
-            final Value object,
-            final Resource... contexts) {
-        CloseableIteration<? extends Statement, SailException> iter = getObjectStatements(object);
+        Vertex subjectVertex = null;
+        Vertex objectVertex = null;
         if (null != subject) {
-            iter = addSubjectFilter(iter, subject);
-        }
-        if (null != predicate) {
-            iter = addPredicateFilter(iter, predicate);
+            subjectVertex = getVertexByValue(subject);
+            if (null == subjectVertex) {
+                return new AccessPlan(AccessPlan.Path.Empty, 0, null, null, label, contextKeys);
+            }
         }
-        if (contexts.length > 0) {
-            iter = addContextFilter(iter, contexts);
+        if (null != object) {
+            objectVertex = getVertexByValue(object);
+            if (null == objectVertex) {
+                return new AccessPlan(AccessPlan.Path.Empty, 0, subjectVertex, null, label, contextKeys);
+            }
         }
-        return iter;
+
+        return planAccess(subjectVertex, label, objectVertex, contextKeys);
     }
 
-    private CloseableIteration<? extends Statement, SailException> getStatementsWithFullScan(
-            final Resource subject,
-            final IRI predicate,
-            final Value object,
-            final Resource... contexts) {
-        CloseableIteration<? extends Statement, SailException> iter = getAllStatements();
-        if (null != subject) {
-            iter = addSubjectFilter(iter, subject);
+    /**
+     * Chooses the cheapest access path for a statement pattern whose bound subject and object have already
+     * been resolved to vertices. Any of the arguments may be null, and a null set of contexts matches all contexts.
+     */
+    AccessPlan planAccess(final Vertex subjectVertex,
+                          final String label,
+                          final Vertex objectVertex,
+                          final Set<String> contextKeys) {
+
+        // a fully bound pattern is answered by one hash lookup per context
+        if (null != subjectVertex && null != label && null != objectVertex && null != contextKeys) {
+            return new AccessPlan(AccessPlan.Path.StatementIndex, contextKeys.size(),
+                    subjectVertex, objectVertex, label, contextKeys);
         }
-        if (null != object) {
-            iter = addObjectFilter(iter, object);
+
+        AccessPlan.Path best = AccessPlan.Path.FullScan;
+        long bestCost = countAllStatements();
+        if (null != contextKeys) {
+            long cost = 0;
+            for (String context : contextKeys) {
+                cost += contextIndex.count(context);
+            }
+            if (cost <= bestCost) {
+                best = AccessPlan.Path.ContextIndex;
+                bestCost = cost;
+            }
         }
-        if (null != predicate) {
-            iter = addPredicateFilter(iter, predicate);
+        if (null != label) {
+            long cost = predicateIndex.count(label);
+            if (cost <= bestCost) {
+                best = AccessPlan.Path.PredicateIndex;
+                bestCost = cost;
+            }
         }
-        if (contexts.length > 0) {
-            iter = addContextFilter(iter, contexts);
+        if (null != objectVertex) {
+            long cost = counters.getInDegree(objectVertex);
+            if (null != label) {
+                cost = Math.min(cost, averageDegree(label, counters.getDistinctObjects(label)));
+            }
+            if (cost <= bestCost) {
+                best = AccessPlan.Path.ObjectEdges;
+                bestCost = cost;
+            }
+        }
+        if (null != subjectVertex) {
+            long cost = counters.getOutDegree(subjectVertex);
+            if (null != label) {
+                cost = Math.min(cost, averageDegree(label, counters.getDistinctSubjects(label)));
+            }
+            if (cost <= bestCost) {
+                best = AccessPlan.Path.SubjectEdges;
+                bestCost = cost;
+            }
         }
-        return iter;
-    }
 
-    private <S extends Statement> CloseableIteration<S, SailException> addSubjectFilter(
-            final CloseableIteration<S, SailException> base, final Resource equalSubject) {
-        return IterUtils.filter(base, statement -> statement.getSubject().equals(equalSubject));
+        return new AccessPlan(best, bestCost, subjectVertex, objectVertex, label, contextKeys);
     }
 
-    private <S extends Statement> CloseableIteration<S, SailException> addObjectFilter(
-            final CloseableIteration<S, SailException> base, final Value equalObject) {
-        return IterUtils.filter(base, statement -> statement.getObject().equals(equalObject));
+    // the expected number of edges with the given label per distinct vertex
+    private long averageDegree(final String label, final long distinctVertices) {
+        long count = predicateIndex.count(label);
+        return 0 == distinctVertices ? count : (count + distinctVertices - 1) / distinctVertices;
     }
 
-    private <S extends Statement> CloseableIteration<S, SailException> addPredicateFilter(
-            final CloseableIteration<S, SailException> base, final IRI equalPredicate) {
-        return IterUtils.filter(base, statement -> statement.getPredicate().equals(equalPredicate));
+    private Set<String> toContextKeys(final Resource[] contexts) {
+        Set<String> keys = new HashSet<>();
+        for (Resource context : contexts) {
+            // HashSet explicitly allows null as an element
+            keys.add(toContextKey(context));
+        }
+        return keys;
     }
 
-    private <S extends Statement> CloseableIteration<S, SailException> addContextFilter(
-            final CloseableIteration<S, SailException> base, final Resource[] contexts) {
-        Set<Resource> contextSet = createNullSafeSetOfContexts(contexts);
-        return IterUtils.filter(base,
-                statement -> contextSet.contains(statement.getContext()));
+    // the form in which a context is stored, from which toResource recovers it; null for the default graph
+    String toContextKey(final Resource context) {
+        if (null == context) {
+            return null;
+        }
+        return context instanceof BNode ? "_:" + context.stringValue() : context.stringValue();
     }
 
-    static Set<Resource> findContextsIn(final CloseableIteration<? extends Statement, SailException> iter) {
-        Set<Resource> contexts = new HashSet<>(); // may contain null
-        while (iter.hasNext()) {
-            contexts.add(iter.next().getContext());
+    Iterator<Edge> getEdges(final AccessPlan plan) {
+        Iterator<Edge> edges;
+        switch (plan.getPath()) {
+            case Empty:
+                return Collections.emptyIterator();
+            case StatementIndex:
+                return Iterators.concat(Iterators.transform(plan.contexts.iterator(), context ->
+                        statementIndex.get(toStatementKey(plan.subjectVertex, plan.label, plan.objectVertex, context))));
+            case SubjectEdges:
+                edges = plan.isPredicatePushedDown()
+                        ? getAdjacentEdges(plan.subjectVertex, Direction.OUT, plan.label)
+                        : getAdjacentEdges(plan.subjectVertex, Direction.OUT);
+                break;
+            case ObjectEdges:
+                edges = plan.isPredicatePushedDown()
+                        ? getAdjacentEdges(plan.objectVertex, Direction.IN, plan.label)
+                        : getAdjacentEdges(plan.objectVertex, Direction.IN);
+                break;
+            case PredicateIndex:
+                edges = predicateIndex.get(plan.label);
+                break;
+            case ContextIndex:
+                edges = getContextEdges(plan.contexts);
+                break;
+            case FullScan:
+                edges = getAllStatementEdges();
+                break;
+            default:
+                throw new IllegalStateException();
         }
-        return contexts;
-    }
 
-    Set<Resource> createNullSafeSetOfContexts(final Resource[] contexts) {
-        // HashSet explicitly allows null as an element
-        Set<Resource> set = new HashSet<>();
-        Collections.addAll(set, contexts);
-        return set;
+        // filters compare edges and vertices rather than RDF values, as each value has at most one vertex
+        for (AccessPlan.Position position : plan.getFilters()) {
+            switch (position) {
+                case Subject:
+                    edges = Iterators.filter(edges, edge -> edge.outVertex().equals(plan.subjectVertex));
+                    break;
+                case Predicate:
+                    edges = Iterators.filter(edges, edge -> edge.label().equals(plan.label));
+                    break;
+                case Object:
+                    edges = Iterators.filter(edges, edge -> edge.inVertex().equals(plan.objectVertex));
+                    break;
+                case Context:
+                    edges = Iterators.filter(edges, edge -> plan.contexts.contains(getContextValue(edge)));
+                    break;
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+        return edges;
     }
 
     SailChangedHelper getSailChangedHelper() {
         return sailChangedHelper;
     }
 
+    /**
+     * A statement whose subject and object have been resolved to vertices, ready to be added as an edge
+     */
+    static class ResolvedStatement {
+        private final Statement statement;
+        private final Vertex subjectVertex;
+        private final Vertex objectVertex;
+
+        ResolvedStatement(final Statement statement, final Vertex subjectVertex, final Vertex objectVertex) {
+            this.statement = statement;
+            this.subjectVertex = subjectVertex;
+            this.objectVertex = objectVertex;
+        }
+
+        Statement getStatement() {
+            return statement;
+        }
+    }
+
     abstract static class SailChangedHelper {
-        private boolean statementsAdded;
-        private boolean statementsRemoved;
+        // set by writers, and cleared by whichever connection next flushes
+        private final AtomicBoolean statementsAdded = new AtomicBoolean();
+        private final AtomicBoolean statementsRemoved = new AtomicBoolean();
 
         public abstract void notifyOfChanges(boolean statementsAdded, boolean statementsRemoved);
 
-        synchronized void flush() {
-            boolean addedTmp = statementsAdded;
-            boolean removedTmp = statementsRemoved;
-            statementsAdded = false;
-            statementsRemoved = false;
-            notifyOfChanges(addedTmp, removedTmp);
+        void flush() {
+            notifyOfChanges(statementsAdded.getAndSet(false), statementsRemoved.getAndSet(false));
         }
     }
 }
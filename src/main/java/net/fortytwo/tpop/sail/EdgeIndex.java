@@ -0,0 +1,81 @@
+package net.fortytwo.tpop.sail;
+
+import com.google.common.collect.Iterators;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-memory index of statement edges by a key derived from each edge, such as its label.
+ * Edge sets are concurrent, so an index iterator may safely be consumed while edges are being removed,
+ * as happens when statements matching a pattern are deleted.
+ * A null key is allowed.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+class EdgeIndex<K> {
+    private static final Object NULL_KEY = new Object();
+
+    private final Map<Object, Set<Edge>> edgesByKey = new ConcurrentHashMap<>();
+
+    /**
+     * @return whether the key had no edges before this one was added
+     */
+    boolean add(final K key, final Edge edge) {
+        boolean[] isNewKey = {false};
+        edgesByKey.compute(wrap(key), (k, edges) -> {
+            Set<Edge> result = edges;
+            if (null == result) {
+                result = ConcurrentHashMap.newKeySet();
+                isNewKey[0] = true;
+            }
+            result.add(edge);
+            return result;
+        });
+        return isNewKey[0];
+    }
+
+    /**
+     * @return whether the key has no edges after this one was removed
+     */
+    boolean remove(final K key, final Edge edge) {
+        boolean[] isRemovedKey = {false};
+        edgesByKey.computeIfPresent(wrap(key), (k, edges) -> {
+            edges.remove(edge);
+            isRemovedKey[0] = edges.isEmpty();
+            return isRemovedKey[0] ? null : edges;
+        });
+        return isRemovedKey[0];
+    }
+
+    Iterator<Edge> get(final K key) {
+        Set<Edge> edges = edgesByKey.get(wrap(key));
+        return null == edges ? Collections.emptyIterator() : edges.iterator();
+    }
+
+    boolean contains(final K key, final Edge edge) {
+        Set<Edge> edges = edgesByKey.get(wrap(key));
+        return null != edges && edges.contains(edge);
+    }
+
+    long count(final K key) {
+        Set<Edge> edges = edgesByKey.get(wrap(key));
+        return null == edges ? 0 : edges.size();
+    }
+
+    /**
+     * @return the distinct keys which currently have at least one edge
+     */
+    @SuppressWarnings("unchecked")
+    Iterator<K> keys() {
+        return Iterators.transform(edgesByKey.keySet().iterator(), k -> NULL_KEY == k ? null : (K) k);
+    }
+
+    private Object wrap(final K key) {
+        return null == key ? NULL_KEY : key;
+    }
+}
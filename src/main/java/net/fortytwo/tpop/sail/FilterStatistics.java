@@ -0,0 +1,68 @@
+package net.fortytwo.tpop.sail;
+
+/**
+ * A point-in-time snapshot of one of GraphSail's membership filters
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+public class FilterStatistics {
+    private final long entries;
+    private final long queries;
+    private final long negatives;
+    private final double falsePositiveRate;
+    private final long memoryBytes;
+
+    FilterStatistics(final long entries,
+                     final long queries,
+                     final long negatives,
+                     final double falsePositiveRate,
+                     final long memoryBytes) {
+        this.entries = entries;
+        this.queries = queries;
+        this.negatives = negatives;
+        this.falsePositiveRate = falsePositiveRate;
+        this.memoryBytes = memoryBytes;
+    }
+
+    /**
+     * @return the number of keys currently in the filter
+     */
+    public long getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return the number of membership queries answered by the filter
+     */
+    public long getQueries() {
+        return queries;
+    }
+
+    /**
+     * @return the number of queries answered with a definite negative, without consulting the graph
+     */
+    public long getNegatives() {
+        return negatives;
+    }
+
+    /**
+     * @return the expected probability that the filter reports a key as present which is absent,
+     * for the current number of keys
+     */
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    /**
+     * @return the size of the filter's counters, in bytes
+     */
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "FilterStatistics{entries=" + entries + ", queries=" + queries + ", negatives=" + negatives
+                + ", falsePositiveRate=" + falsePositiveRate + ", memoryBytes=" + memoryBytes + "}";
+    }
+}
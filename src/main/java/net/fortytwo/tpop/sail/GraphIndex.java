@@ -2,11 +2,39 @@ package net.fortytwo.tpop.sail;
 
 import org.apache.tinkerpop.gremlin.structure.Vertex;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * An index over vertex properties, keyed either on a single property key or on a composite of several keys.
+ * A composite index contains those vertices which have a value for the first key and for at least one
+ * other key, indexed by the values of all keys in order, with null for any absent value.
+ */
 public abstract class GraphIndex {
+    private static final String COMPOSITE_KEY_SEPARATOR = "+";
+
     protected final String key;
+    protected final List<String> keys;
 
     protected GraphIndex(final String key) {
         this.key = key;
+        this.keys = Collections.unmodifiableList(
+                Arrays.asList(key.split(Pattern.quote(COMPOSITE_KEY_SEPARATOR))));
+    }
+
+    /**
+     * @param keys the property keys of a composite index, in order
+     * @return the key by which a composite index is requested from an index factory
+     */
+    public static String compositeKey(final String... keys) {
+        return String.join(COMPOSITE_KEY_SEPARATOR, keys);
+    }
+
+    protected boolean isComposite() {
+        return keys.size() > 1;
     }
 
     protected abstract boolean isAutomatic();
@@ -17,6 +45,17 @@ public abstract class GraphIndex {
 
     public abstract void removeInternal(Vertex vertex);
 
+    /**
+     * Finds vertices directly by the values of the index keys.
+     * By default, direct lookups are not supported, and vertices are found by graph traversal instead.
+     *
+     * @param values a value (possibly null) for each key of the index, in order
+     * @return the matching vertices, or null if this index does not support direct lookups
+     */
+    protected Iterator<Vertex> getInternal(final Object... values) {
+        return null;
+    }
+
     void add(Vertex vertex) {
         if (!isAutomatic()) {
             addInternal(vertex);
@@ -28,4 +67,8 @@ public abstract class GraphIndex {
             removeInternal(vertex);
         }
     }
+
+    Iterator<Vertex> get(final Object... values) {
+        return getInternal(values);
+    }
 }
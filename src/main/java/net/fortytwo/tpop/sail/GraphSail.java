@@ -1,12 +1,14 @@
 package net.fortytwo.tpop.sail;
 
 import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.ValueFactory;
 import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategyFactory;
 import org.eclipse.rdf4j.query.algebra.evaluation.federation.FederatedServiceResolver;
 import org.eclipse.rdf4j.query.algebra.evaluation.federation.FederatedServiceResolverClient;
 import org.eclipse.rdf4j.query.algebra.evaluation.federation.FederatedServiceResolverImpl;
-import org.eclipse.rdf4j.query.algebra.evaluation.impl.StrictEvaluationStrategyFactory;
 import org.eclipse.rdf4j.sail.NotifyingSailConnection;
 import org.eclipse.rdf4j.sail.Sail;
 import org.eclipse.rdf4j.sail.SailChangedEvent;
@@ -22,6 +24,11 @@ import java.util.function.Function;
  * @author Joshua Shinavier (http://fortytwo.net)
  */
 public class GraphSail extends AbstractNotifyingSail {
+    /**
+     * The default maximum number of RDF values whose vertices are cached for fast lookup
+     */
+    public static final int DEFAULT_VERTEX_CACHE_CAPACITY = 100000;
+
     private final DataStore dataStore;
     private final SailStore sailStore;
 
@@ -34,30 +41,46 @@ public class GraphSail extends AbstractNotifyingSail {
     }
 
     public GraphSail(final Graph graph, final Function<String, GraphIndex> indexFactory, final boolean readOnly) {
-        this.dataStore = new DataStore(graph, readOnly, indexFactory, new DataStore.SailChangedHelper() {
-            @Override
-            public void notifyOfChanges(boolean statementsAdded, boolean statementsRemoved) {
-                if (statementsAdded || statementsRemoved) {
-                    SailChangedEvent event = new SailChangedEvent() {
-                        @Override
-                        public Sail getSail() {
-                            return GraphSail.this;
-                        }
+        this(graph, indexFactory, readOnly, DEFAULT_VERTEX_CACHE_CAPACITY);
+    }
 
-                        @Override
-                        public boolean statementsAdded() {
-                            return statementsAdded;
-                        }
+    /**
+     * @param graph               the graph in which RDF statements are stored
+     * @param indexFactory        a factory for vertex indices over the given graph
+     * @param readOnly            whether the resulting Sail is read-only
+     * @param vertexCacheCapacity the maximum number of RDF values whose vertices are cached in memory,
+     *                            in front of the value index, and likewise the maximum number of vertices
+     *                            whose RDF values are cached. A capacity of 0 disables both caches.
+     */
+    public GraphSail(final Graph graph,
+                     final Function<String, GraphIndex> indexFactory,
+                     final boolean readOnly,
+                     final int vertexCacheCapacity) {
+        this.dataStore = new DataStore(graph, readOnly, indexFactory, vertexCacheCapacity,
+                new DataStore.SailChangedHelper() {
+                    @Override
+                    public void notifyOfChanges(boolean statementsAdded, boolean statementsRemoved) {
+                        if (statementsAdded || statementsRemoved) {
+                            SailChangedEvent event = new SailChangedEvent() {
+                                @Override
+                                public Sail getSail() {
+                                    return GraphSail.this;
+                                }
 
-                        @Override
-                        public boolean statementsRemoved() {
-                            return statementsRemoved;
+                                @Override
+                                public boolean statementsAdded() {
+                                    return statementsAdded;
+                                }
+
+                                @Override
+                                public boolean statementsRemoved() {
+                                    return statementsRemoved;
+                                }
+                            };
+                            notifySailChanged(event);
                         }
-                    };
-                    notifySailChanged(event);
-                }
-            }
-        });
+                    }
+                });
         this.sailStore = new GraphSailStore(dataStore);
     }
 
@@ -71,7 +94,7 @@ public class GraphSail extends AbstractNotifyingSail {
 
     synchronized EvaluationStrategyFactory getEvaluationStrategyFactory() {
         if (evalStratFactory == null) {
-            evalStratFactory = new StrictEvaluationStrategyFactory(getFederatedServiceResolver());
+            evalStratFactory = new GraphSailEvaluationStrategyFactory(getFederatedServiceResolver(), dataStore);
         }
         evalStratFactory.setQuerySolutionCacheThreshold(getIterationCacheSyncThreshold());
         return evalStratFactory;
@@ -101,13 +124,128 @@ public class GraphSail extends AbstractNotifyingSail {
      * If enabled, this policy will first remove any existing statements identical to the to-be-added statement,
      * before adding the latter statement.
      * This comes at the cost of higher write latency.
+     * The policy cannot be changed while a bulk load is in progress.
      *
      * @param flag whether this policy should be enforced
+     * @throws SailException if a bulk load is in progress and the flag differs from the current policy
      */
     public void enforceUniqueStatements(final boolean flag) {
         dataStore.setUniqueStatements(flag);
     }
 
+    /**
+     * Begins a bulk load, for fast ingestion of a large number of statements.
+     * Until the load is ended, each distinct RDF value is looked up in the graph at most once,
+     * statements bypass the change tracking of the connection through which they are added,
+     * and vertex index maintenance and the enforcement of unique statements are deferred to the end of the load.
+     * Statements added during a bulk load are nonetheless immediately visible to readers.
+     */
+    public void beginBulkLoad() {
+        dataStore.beginBulkLoad();
+    }
+
+    /**
+     * Ends the current bulk load, performing any deferred index maintenance and duplicate elimination
+     *
+     * @return a summary of the load, including its throughput
+     */
+    public BulkLoadReport endBulkLoad() {
+        return dataStore.endBulkLoad();
+    }
+
+    /**
+     * Enables membership filters over stored values and statements: counting Bloom filters which let
+     * lookups of absent values, and probes for absent statements, return without consulting the graph.
+     * The filters are populated from the graph when enabled, and maintained as statements are added and removed.
+     * They are best enabled before the sail is put to use, as population scans all vertices and edges.
+     *
+     * @param expectedValues           the number of distinct RDF values the graph is expected to hold
+     * @param expectedStatements       the number of statements the graph is expected to hold
+     * @param falsePositiveProbability the desired probability that a filter fails to rule out an absent
+     *                                 value or statement, at the expected number of values and statements
+     */
+    public void enableMembershipFilters(final long expectedValues,
+                                        final long expectedStatements,
+                                        final double falsePositiveProbability) {
+        dataStore.enableMembershipFilters(expectedValues, expectedStatements, falsePositiveProbability);
+    }
+
+    /**
+     * @return the size, expected false positive rate and memory usage of the value membership filter,
+     * or null if membership filters are not enabled
+     */
+    public FilterStatistics getValueFilterStatistics() {
+        return dataStore.getValueFilterStatistics();
+    }
+
+    /**
+     * @return the size, expected false positive rate and memory usage of the statement membership filter,
+     * or null if membership filters are not enabled
+     */
+    public FilterStatistics getStatementFilterStatistics() {
+        return dataStore.getStatementFilterStatistics();
+    }
+
+    /**
+     * Enables a composite index over literals, by value, datatype and language, through which a literal is found
+     * directly rather than by filtering every literal which shares its lexical form.
+     * The index is requested from this sail's index factory with the key
+     * GraphIndex.compositeKey("value", "datatype", "language"), so the factory must support composite keys,
+     * as TinkerGraphIndex does. Without this index, the factory is only asked for single-key indices.
+     */
+    public void enableLiteralIndex() {
+        dataStore.enableLiteralIndex();
+    }
+
+    /**
+     * Enables a range index over literal objects: an ordered index of the statements of each predicate
+     * by the values of their numeric, xsd:dateTime and xsd:date objects, through which range FILTERs such as
+     * FILTER(?price &gt; 100), over the objects of a pattern with a constant predicate, are answered
+     * without matching every statement of the predicate.
+     * The index is populated from the graph when enabled, and maintained as statements are added and removed.
+     */
+    public void enableRangeIndex() {
+        dataStore.enableRangeIndex();
+    }
+
+    /**
+     * Enables a full-text index over literals: an inverted index of literals by the character n-grams of their
+     * labels, through which text FILTERs such as FILTER(CONTAINS(LCASE(?label), "foo")), or a REGEX whose pattern
+     * is a plain string, over the objects of a pattern are answered without matching every statement of the pattern.
+     * The index is populated from the graph when enabled, and maintained as literals are added and removed.
+     */
+    public void enableTextIndex() {
+        dataStore.enableTextIndex();
+    }
+
+    /**
+     * Describes how statements matching the given pattern would currently be retrieved, for diagnostic purposes
+     *
+     * @param subject   the subject of the pattern, or null for any subject
+     * @param predicate the predicate of the pattern, or null for any predicate
+     * @param object    the object of the pattern, or null for any object
+     * @param contexts  the contexts of the pattern, if any (null for the default graph)
+     * @return the chosen access path, with its estimated cost and its residual filters
+     */
+    public AccessPlan explain(final Resource subject, final IRI predicate, final Value object,
+                              final Resource... contexts) {
+        return dataStore.planAccess(subject, predicate, object, contexts);
+    }
+
+    /**
+     * @return the hit and miss counters of the cache which maps RDF values to their vertices
+     */
+    public CacheStatistics getVertexCacheStatistics() {
+        return dataStore.getVertexCacheStatistics();
+    }
+
+    /**
+     * @return the hit and miss counters of the cache which maps vertices to the RDF values materialized from them
+     */
+    public CacheStatistics getValueCacheStatistics() {
+        return dataStore.getValueCacheStatistics();
+    }
+
     @Override
     protected void shutDownInternal() throws SailException {
         wrapForSail(sailStore::close);
@@ -1,10 +1,13 @@
 package net.fortytwo.tpop.sail;
 
-import org.apache.tinkerpop.gremlin.structure.Vertex;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.Dataset;
+import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
+import org.eclipse.rdf4j.query.algebra.evaluation.TripleSource;
 import org.eclipse.rdf4j.sail.SailException;
+import org.eclipse.rdf4j.sail.UpdateContext;
 import org.eclipse.rdf4j.sail.base.SailSourceConnection;
 
 /**
@@ -14,36 +17,90 @@ import org.eclipse.rdf4j.sail.base.SailSourceConnection;
  */
 class GraphSailConnection extends SailSourceConnection {
 
-    private static final Resource[] DEFAULT_CONTEXT = {null};
-
     private final DataStore dataStore;
 
+    // cleared contexts are only removed from the graph on commit, so until then, the data store
+    // does not reflect all changes visible to this connection
+    private boolean clearPending;
+
     GraphSailConnection(GraphSail sail) {
         super(sail, sail.getSailStore(), sail.getEvaluationStrategyFactory());
         this.dataStore = sail.getDataStore();
     }
 
+    /**
+     * During a bulk load, statements are written directly to the graph, bypassing the per-statement
+     * change tracking of the connection. In particular, connection listeners are not notified of them.
+     */
+    @Override
+    public void addStatement(final UpdateContext op,
+                             final Resource subject,
+                             final IRI predicate,
+                             final Value object,
+                             final Resource... contexts) throws SailException {
+        if (dataStore.isBulkLoading()) {
+            verifyIsOpen();
+            verifyIsActive();
+            addStatementInternal(subject, predicate, object, contexts);
+        } else {
+            super.addStatement(op, subject, predicate, object, contexts);
+        }
+    }
+
     @Override
     public void addStatementInternal(
             final Resource subject,
             final IRI predicate,
             final Value object,
             final Resource... contexts) throws SailException {
-        Vertex subjectVertex = dataStore.getOrCreateVertexByValue(subject);
-        Vertex objectVertex = dataStore.getOrCreateVertexByValue(object);
-        Resource[] addContexts = 0 == contexts.length
-                ? DEFAULT_CONTEXT
-                : contexts;
-        String label = predicate.stringValue();
-        for (Resource context : addContexts) {
-            String contextValue = null == context ? null : context.stringValue();
-            if (dataStore.getUniqueStatements()
-                    && dataStore.edgeExists(subjectVertex, objectVertex, label, contextValue)) {
-                continue;
-            }
-
-            dataStore.addStatementInternal(subjectVertex, objectVertex, label, contextValue);
-         }
+        dataStore.addStatement(subject, predicate, object, contexts);
+    }
+
+    /**
+     * The size of the store is read from its maintained statement counters, rather than by iterating over
+     * all statements.
+     */
+    @Override
+    protected long sizeInternal(final Resource... contexts) throws SailException {
+        if (clearPending) {
+            return super.sizeInternal(contexts);
+        }
+
+        flush();
+        return dataStore.countDistinctStatements(contexts);
+    }
+
+    @Override
+    protected EvaluationStrategy getEvaluationStrategy(final Dataset dataset, final TripleSource tripleSource) {
+        EvaluationStrategy strategy = super.getEvaluationStrategy(dataset, tripleSource);
+        if (strategy instanceof GraphSailEvaluationStrategy) {
+            ((GraphSailEvaluationStrategy) strategy).setDirectAccess(!clearPending);
+        }
+        return strategy;
+    }
+
+    @Override
+    protected void clearInternal(final Resource... contexts) throws SailException {
+        super.clearInternal(contexts);
+        clearPending = true;
+    }
+
+    @Override
+    protected void commitInternal() throws SailException {
+        try {
+            super.commitInternal();
+        } finally {
+            clearPending = false;
+        }
+    }
+
+    @Override
+    protected void rollbackInternal() throws SailException {
+        try {
+            super.rollbackInternal();
+        } finally {
+            clearPending = false;
+        }
     }
 
     @Override
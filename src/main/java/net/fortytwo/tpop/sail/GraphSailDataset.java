@@ -9,8 +9,6 @@ import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.sail.SailException;
 import org.eclipse.rdf4j.sail.base.SailDataset;
 
-import java.util.Set;
-
 class GraphSailDataset implements SailDataset {
     private final DataStore dataStore;
 
@@ -35,8 +33,7 @@ class GraphSailDataset implements SailDataset {
 
     @Override
     public CloseableIteration<? extends Resource, SailException> getContextIDs() throws SailException {
-            Set<Resource> contexts = DataStore.findContextsIn(dataStore.getAllStatements());
-            return IterUtils.toCloseableIteration(contexts.iterator(), s -> s);
+        return dataStore.getContextIDs();
     }
 
     @Override
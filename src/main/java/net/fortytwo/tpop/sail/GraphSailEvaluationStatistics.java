@@ -0,0 +1,110 @@
+package net.fortytwo.tpop.sail;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.EvaluationStatistics;
+
+/**
+ * Cardinality estimates for statement patterns, derived from the live counters of a DataStore,
+ * which allow the query optimizer to begin a join with its most selective pattern.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+class GraphSailEvaluationStatistics extends EvaluationStatistics {
+    private final DataStore dataStore;
+
+    GraphSailEvaluationStatistics(final DataStore dataStore) {
+        this.dataStore = dataStore;
+    }
+
+    @Override
+    protected CardinalityCalculator createCardinalityCalculator() {
+        return new GraphSailCardinalityCalculator();
+    }
+
+    /**
+     * Estimates the number of statements matching a pattern, given its constant components (any of which
+     * may be null).
+     * Where more than one component is bound, the smallest of the per-component estimates is taken,
+     * scaled by the selectivity of any bound context.
+     */
+    double estimateCardinality(final Resource subject,
+                               final IRI predicate,
+                               final Value object,
+                               final Resource context,
+                               final boolean contextIsBound,
+                               final boolean namedGraphsOnly) {
+        double total = dataStore.countAllStatements();
+        if (0 == total) {
+            return 0;
+        }
+
+        double estimate = total;
+        if (null != predicate) {
+            estimate = Math.min(estimate, dataStore.countPredicateStatements(predicate));
+        }
+        if (null != subject) {
+            double outDegree = dataStore.getOutDegree(subject);
+            if (null != predicate) {
+                outDegree = Math.min(outDegree, perDistinct(
+                        dataStore.countPredicateStatements(predicate), dataStore.estimateDistinctSubjects(predicate)));
+            }
+            estimate = Math.min(estimate, outDegree);
+        }
+        if (null != object) {
+            double inDegree = dataStore.getInDegree(object);
+            if (null != predicate) {
+                inDegree = Math.min(inDegree, perDistinct(
+                        dataStore.countPredicateStatements(predicate), dataStore.estimateDistinctObjects(predicate)));
+            }
+            estimate = Math.min(estimate, inDegree);
+        }
+
+        double contextSize;
+        if (contextIsBound) {
+            contextSize = dataStore.countContextStatements(context);
+        } else if (namedGraphsOnly) {
+            contextSize = total - dataStore.countContextStatements((Resource) null);
+        } else {
+            contextSize = total;
+        }
+
+        if (null == subject && null == predicate && null == object) {
+            return contextSize;
+        } else {
+            return Math.min(contextSize, estimate * contextSize / total);
+        }
+    }
+
+    private double perDistinct(final long count, final long distinct) {
+        return count / (double) Math.max(1, distinct);
+    }
+
+    private class GraphSailCardinalityCalculator extends CardinalityCalculator {
+        @Override
+        protected double getCardinality(final StatementPattern sp) {
+            Value subject = valueOf(sp.getSubjectVar());
+            Value predicate = valueOf(sp.getPredicateVar());
+            Value object = valueOf(sp.getObjectVar());
+            Var contextVar = sp.getContextVar();
+            Value context = valueOf(contextVar);
+
+            if ((null != subject && !(subject instanceof Resource))
+                    || (null != predicate && !(predicate instanceof IRI))
+                    || (null != context && !(context instanceof Resource))) {
+                return 0;
+            }
+
+            return estimateCardinality((Resource) subject, (IRI) predicate, object, (Resource) context,
+                    null != context,
+                    sp.getScope() == StatementPattern.Scope.NAMED_CONTEXTS);
+        }
+
+        private Value valueOf(final Var var) {
+            return null == var ? null : var.getValue();
+        }
+    }
+}
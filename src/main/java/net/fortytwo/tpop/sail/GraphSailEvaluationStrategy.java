@@ -0,0 +1,482 @@
+package net.fortytwo.tpop.sail;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
+import org.eclipse.rdf4j.common.iteration.SingletonIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.Dataset;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.ArbitraryLengthPath;
+import org.eclipse.rdf4j.query.algebra.Count;
+import org.eclipse.rdf4j.query.algebra.Distinct;
+import org.eclipse.rdf4j.query.algebra.Filter;
+import org.eclipse.rdf4j.query.algebra.Group;
+import org.eclipse.rdf4j.query.algebra.GroupElem;
+import org.eclipse.rdf4j.query.algebra.Join;
+import org.eclipse.rdf4j.query.algebra.Projection;
+import org.eclipse.rdf4j.query.algebra.ProjectionElem;
+import org.eclipse.rdf4j.query.algebra.Service;
+import org.eclipse.rdf4j.query.algebra.Slice;
+import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.ZeroLengthPath;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.TripleSource;
+import org.eclipse.rdf4j.query.algebra.evaluation.federation.FederatedServiceResolver;
+import org.eclipse.rdf4j.query.algebra.evaluation.iterator.ProjectionIterator;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.StrictEvaluationStrategy;
+import org.eclipse.rdf4j.query.algebra.helpers.TupleExprs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An evaluation strategy which answers certain query patterns directly from the graph and its indices,
+ * rather than by evaluating them statement by statement.
+ * Anything it does not recognize is evaluated exactly as by the standard strategy.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+class GraphSailEvaluationStrategy extends StrictEvaluationStrategy {
+    private static final Resource[] NO_CONTEXTS = {};
+    private static final Resource[] DEFAULT_CONTEXT = {null};
+
+    private final DataStore dataStore;
+
+    private boolean directAccess = true;
+
+    GraphSailEvaluationStrategy(final TripleSource tripleSource,
+                                final Dataset dataset,
+                                final FederatedServiceResolver serviceResolver,
+                                final long iterationCacheSyncThreshold,
+                                final DataStore dataStore) {
+        super(tripleSource, dataset, serviceResolver, iterationCacheSyncThreshold);
+        this.dataStore = dataStore;
+    }
+
+    /**
+     * @param directAccess whether the data store reflects all changes visible to the evaluating connection,
+     *                     so that it may be read directly. If not, all patterns are evaluated as usual.
+     */
+    void setDirectAccess(final boolean directAccess) {
+        this.directAccess = directAccess;
+    }
+
+    /**
+     * A COUNT(*) over a single statement pattern, without grouping, is answered by DataStore.count,
+     * so that no statements are materialized.
+     */
+    @Override
+    public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(final Group node,
+                                                                           final BindingSet bindings)
+            throws QueryEvaluationException {
+        if (directAccess && isCountOfStatementPattern(node)) {
+            Long count = countStatementPattern((StatementPattern) node.getArg(), bindings);
+            if (null != count) {
+                QueryBindingSet result = new QueryBindingSet(bindings);
+                result.setBinding(node.getGroupElements().get(0).getName(),
+                        tripleSource.getValueFactory().createLiteral(Long.toString(count), XMLSchema.INTEGER));
+                return new SingletonIteration<>(result);
+            }
+        }
+
+        if (directAccess && isGroupCountOfStatementPattern(node)) {
+            List<BindingSet> groups = groupCountStatementPattern(node, bindings);
+            if (null != groups) {
+                return new CloseableIteratorIteration<>(groups.iterator());
+            }
+        }
+
+        return super.evaluate(node, bindings);
+    }
+
+    /**
+     * A join of statement patterns, possibly with filters, is evaluated as a walk over the graph.
+     * Otherwise, the operands of the join are joined from left to right, each run of operands which form a basic
+     * graph pattern being evaluated as a walk, or as a batched bind join with the operands before it.
+     */
+    @Override
+    public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(final Join join,
+                                                                           final BindingSet bindings)
+            throws QueryEvaluationException {
+        CloseableIteration<BindingSet, QueryEvaluationException> walk = evaluateAsWalk(join, bindings);
+        if (null != walk) {
+            return walk;
+        }
+
+        CloseableIteration<BindingSet, QueryEvaluationException> bindJoin = evaluateAsBindJoins(join, bindings);
+        return null != bindJoin ? bindJoin : super.evaluate(join, bindings);
+    }
+
+    @Override
+    public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(final Filter filter,
+                                                                           final BindingSet bindings)
+            throws QueryEvaluationException {
+        CloseableIteration<BindingSet, QueryEvaluationException> walk = evaluateAsWalk(filter, bindings);
+        return null != walk ? walk : super.evaluate(filter, bindings);
+    }
+
+    /**
+     * A LIMIT and/or OFFSET, possibly over a DISTINCT, over a projected basic graph pattern is applied by the walk
+     * which evaluates the pattern, so that skipped solutions are never converted to values and the walk ends
+     * as soon as the limit is reached.
+     */
+    @Override
+    public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(final Slice slice,
+                                                                           final BindingSet bindings)
+            throws QueryEvaluationException {
+        TupleExpr arg = slice.getArg();
+        boolean distinct = arg instanceof Distinct;
+        if (distinct) {
+            arg = ((Distinct) arg).getArg();
+        }
+
+        CloseableIteration<BindingSet, QueryEvaluationException> walk = evaluateAsModifiedWalk(arg, bindings,
+                distinct, slice.hasOffset() ? slice.getOffset() : 0, slice.hasLimit() ? slice.getLimit() : -1);
+        return null != walk ? walk : super.evaluate(slice, bindings);
+    }
+
+    /**
+     * A DISTINCT over a projected basic graph pattern is applied by the walk which evaluates the pattern,
+     * so that duplicate solutions are never converted to values
+     */
+    @Override
+    public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(final Distinct distinct,
+                                                                           final BindingSet bindings)
+            throws QueryEvaluationException {
+        CloseableIteration<BindingSet, QueryEvaluationException> walk
+                = evaluateAsModifiedWalk(distinct.getArg(), bindings, true, 0, -1);
+        return null != walk ? walk : super.evaluate(distinct, bindings);
+    }
+
+    /**
+     * The transitive closure of a single predicate is evaluated as a breadth-first search over its edges
+     */
+    @Override
+    public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(final ArbitraryLengthPath path,
+                                                                           final BindingSet bindings)
+            throws QueryEvaluationException {
+        if (directAccess && isDefaultDataset()) {
+            TransitivePath compiled = TransitivePath.compile(path);
+            if (null != compiled) {
+                return compiled.evaluate(dataStore, bindings);
+            }
+        }
+
+        return super.evaluate(path, bindings);
+    }
+
+    @Override
+    public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(final ZeroLengthPath path,
+                                                                           final BindingSet bindings)
+            throws QueryEvaluationException {
+        if (directAccess && isDefaultDataset()) {
+            CloseableIteration<BindingSet, QueryEvaluationException> result
+                    = TransitivePath.evaluate(path, dataStore, bindings);
+            if (null != result) {
+                return result;
+            }
+        }
+
+        return super.evaluate(path, bindings);
+    }
+
+    private CloseableIteration<BindingSet, QueryEvaluationException> evaluateAsWalk(final TupleExpr expr,
+                                                                                  final BindingSet bindings) {
+        if (!directAccess || !isDefaultDataset()) {
+            return null;
+        }
+
+        BasicGraphPattern pattern = BasicGraphPattern.compile(expr);
+        return null == pattern ? null : pattern.evaluate(dataStore, this, bindings);
+    }
+
+    private CloseableIteration<BindingSet, QueryEvaluationException> evaluateAsModifiedWalk(
+            final TupleExpr expr,
+            final BindingSet bindings,
+            final boolean distinct,
+            final long offset,
+            final long limit) {
+        if (!directAccess || !isDefaultDataset()) {
+            return null;
+        }
+
+        Projection projection = null;
+        TupleExpr arg = expr;
+        if (arg instanceof Projection) {
+            projection = (Projection) arg;
+            arg = projection.getArg();
+        }
+
+        BasicGraphPattern pattern = BasicGraphPattern.compile(arg);
+        if (null == pattern) {
+            return null;
+        }
+
+        Set<String> distinctNames = null;
+        if (distinct) {
+            if (null == projection) {
+                distinctNames = pattern.getVariableNames();
+            } else {
+                // projected solutions are equal if the projected bindings of the pattern are equal
+                distinctNames = new HashSet<>();
+                for (ProjectionElem elem : projection.getProjectionElemList().getElements()) {
+                    distinctNames.add(elem.getSourceName());
+                }
+            }
+        }
+
+        CloseableIteration<BindingSet, QueryEvaluationException> walk
+                = pattern.evaluate(dataStore, this, bindings, distinctNames, offset, limit);
+        return null == projection ? walk : new ProjectionIterator(projection, walk, bindings);
+    }
+
+    private CloseableIteration<BindingSet, QueryEvaluationException> evaluateAsBindJoins(final Join join,
+                                                                                       final BindingSet bindings) {
+        if (!directAccess || !isDefaultDataset()) {
+            return null;
+        }
+
+        List<TupleExpr> operands = new ArrayList<>();
+        addJoinOperands(join, operands);
+        // subqueries are evaluated independently of the other operands, and services are joined in bulk
+        for (TupleExpr operand : operands) {
+            if (operand instanceof Service || TupleExprs.containsSubquery(operand)) {
+                return null;
+            }
+        }
+
+        CloseableIteration<BindingSet, QueryEvaluationException> result = null;
+        int i = 0;
+        while (i < operands.size()) {
+            // the longest run of operands which form a basic graph pattern
+            BasicGraphPattern pattern = null;
+            int end = i;
+            while (end < operands.size()) {
+                BasicGraphPattern longer = BasicGraphPattern.compile(operands.subList(i, end + 1));
+                if (null == longer) {
+                    break;
+                }
+                pattern = longer;
+                end++;
+            }
+
+            if (null != pattern) {
+                result = null == result
+                        ? pattern.evaluate(dataStore, this, bindings)
+                        : new BatchedBindJoin(dataStore, this, result, pattern);
+                i = end;
+            } else {
+                TupleExpr operand = operands.get(i++);
+                result = null == result
+                        ? evaluate(operand, bindings)
+                        : new BatchedBindJoin(this, result, operand);
+            }
+        }
+        return result;
+    }
+
+    private void addJoinOperands(final TupleExpr expr, final List<TupleExpr> operands) {
+        if (expr instanceof Join) {
+            addJoinOperands(((Join) expr).getLeftArg(), operands);
+            addJoinOperands(((Join) expr).getRightArg(), operands);
+        } else {
+            operands.add(expr);
+        }
+    }
+
+    // an explicit dataset restricts the graphs in scope
+    private boolean isDefaultDataset() {
+        return null == dataset || (dataset.getDefaultGraphs().isEmpty() && dataset.getNamedGraphs().isEmpty());
+    }
+
+    private boolean isCountOfStatementPattern(final Group node) {
+        if (!node.getGroupBindingNames().isEmpty()
+                || 1 != node.getGroupElements().size()
+                || !(node.getArg() instanceof StatementPattern)) {
+            return false;
+        }
+
+        GroupElem elem = node.getGroupElements().get(0);
+        if (!(elem.getOperator() instanceof Count)) {
+            return false;
+        }
+        Count count = (Count) elem.getOperator();
+        return null == count.getArg() && !count.isDistinct();
+    }
+
+    private boolean isGroupCountOfStatementPattern(final Group node) {
+        if (1 != node.getGroupBindingNames().size()
+                || node.getGroupElements().isEmpty()
+                || !(node.getArg() instanceof StatementPattern)) {
+            return false;
+        }
+
+        for (GroupElem elem : node.getGroupElements()) {
+            if (!(elem.getOperator() instanceof Count)) {
+                return false;
+            }
+            Count count = (Count) elem.getOperator();
+            if (count.isDistinct() || (null != count.getArg() && !(count.getArg() instanceof Var))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A COUNT(*), or a count of a variable of the pattern, over a single statement pattern grouped by one of its
+     * variables is answered by DataStore.groupCount, so that no statements are materialized.
+     *
+     * @return a solution for each group, or null if the pattern cannot be counted directly,
+     * in which case it is evaluated as usual
+     */
+    private List<BindingSet> groupCountStatementPattern(final Group node, final BindingSet bindings) {
+        if (!isDefaultDataset()) {
+            return null;
+        }
+
+        StatementPattern pattern = (StatementPattern) node.getArg();
+        boolean namedContextsOnly = pattern.getScope() == StatementPattern.Scope.NAMED_CONTEXTS;
+        // in the default graph, a context variable is left unbound by statements in the null context
+        if (null != pattern.getContextVar() && !namedContextsOnly) {
+            return null;
+        }
+
+        Var[] vars = {pattern.getSubjectVar(), pattern.getPredicateVar(), pattern.getObjectVar(),
+                pattern.getContextVar()};
+        Value[] values = new Value[vars.length];
+        Set<String> names = new HashSet<>();
+        Set<String> unbound = new HashSet<>();
+        int unboundCount = 0;
+        for (int i = 0; i < vars.length; i++) {
+            if (null != vars[i]) {
+                names.add(vars[i].getName());
+                values[i] = getVarValue(vars[i], bindings);
+                if (null == values[i]) {
+                    unbound.add(vars[i].getName());
+                    unboundCount++;
+                }
+            }
+        }
+        // repeated variables constrain the statements counted
+        if (unbound.size() < unboundCount) {
+            return null;
+        }
+
+        // the grouped variable must be unbound, and each counted variable is bound in every solution
+        String groupName = node.getGroupBindingNames().iterator().next();
+        AccessPlan.Position groupBy = null;
+        for (int i = 0; i < vars.length; i++) {
+            if (null != vars[i] && null == values[i] && vars[i].getName().equals(groupName)) {
+                groupBy = AccessPlan.Position.values()[i];
+            }
+        }
+        if (null == groupBy) {
+            return null;
+        }
+        for (GroupElem elem : node.getGroupElements()) {
+            Var counted = (Var) ((Count) elem.getOperator()).getArg();
+            if (null != counted && !names.contains(counted.getName())) {
+                return null;
+            }
+        }
+
+        Map<Value, Long> counts;
+        if ((null != values[0] && !(values[0] instanceof Resource))
+                || (null != values[1] && !(values[1] instanceof IRI))
+                || (null != values[3] && !(values[3] instanceof Resource))) {
+            counts = Collections.emptyMap();
+        } else {
+            Resource context = (Resource) values[3];
+            counts = dataStore.groupCount((Resource) values[0], (IRI) values[1], values[2], groupBy,
+                    namedContextsOnly && null == context,
+                    null == context ? NO_CONTEXTS : new Resource[]{context});
+        }
+
+        // as in the standard strategy, no solutions at all yield a single, ungrouped solution with zero counts
+        List<BindingSet> groups = new LinkedList<>();
+        if (counts.isEmpty()) {
+            groups.add(toGroupSolution(node, bindings, groupName, null, 0));
+        }
+        for (Map.Entry<Value, Long> e : counts.entrySet()) {
+            groups.add(toGroupSolution(node, bindings, groupName, e.getKey(), e.getValue()));
+        }
+        return groups;
+    }
+
+    private BindingSet toGroupSolution(final Group node,
+                                       final BindingSet bindings,
+                                       final String groupName,
+                                       final Value groupValue,
+                                       final long count) {
+        QueryBindingSet solution = new QueryBindingSet(bindings);
+        if (null != groupValue) {
+            solution.setBinding(groupName, groupValue);
+        }
+        Literal countLiteral = tripleSource.getValueFactory().createLiteral(Long.toString(count), XMLSchema.INTEGER);
+        for (GroupElem elem : node.getGroupElements()) {
+            solution.setBinding(elem.getName(), countLiteral);
+        }
+        return solution;
+    }
+
+    /**
+     * @return the number of solutions of the pattern, or null if it cannot be counted directly,
+     * in which case it is evaluated as usual
+     */
+    private Long countStatementPattern(final StatementPattern pattern, final BindingSet bindings) {
+        if (!isDefaultDataset()) {
+            return null;
+        }
+
+        Var subjectVar = pattern.getSubjectVar();
+        Var predicateVar = pattern.getPredicateVar();
+        Var objectVar = pattern.getObjectVar();
+        Var contextVar = pattern.getContextVar();
+
+        Value subject = getVarValue(subjectVar, bindings);
+        Value predicate = getVarValue(predicateVar, bindings);
+        Value object = getVarValue(objectVar, bindings);
+        Value context = getVarValue(contextVar, bindings);
+
+        // a repeated variable constrains the statements counted, and a wildcard count counts only those
+        // solutions which bind at least one variable, so such patterns are left to the standard strategy
+        Set<String> unbound = new HashSet<>();
+        int unboundCount = 0;
+        for (Var var : new Var[]{subjectVar, predicateVar, objectVar, contextVar}) {
+            if (null != var && null == getVarValue(var, bindings)) {
+                unbound.add(var.getName());
+                unboundCount++;
+            }
+        }
+        if (0 == unboundCount || unbound.size() < unboundCount) {
+            return null;
+        }
+
+        if ((null != subject && !(subject instanceof Resource))
+                || (null != predicate && !(predicate instanceof IRI))
+                || (null != context && !(context instanceof Resource))) {
+            return 0L;
+        }
+
+        Resource[] contexts = null == context ? NO_CONTEXTS : new Resource[]{(Resource) context};
+        long count = dataStore.count((Resource) subject, (IRI) predicate, object, contexts);
+        if (null == context && pattern.getScope() == StatementPattern.Scope.NAMED_CONTEXTS) {
+            // named graphs only
+            count -= dataStore.count((Resource) subject, (IRI) predicate, object, DEFAULT_CONTEXT);
+        }
+        return count;
+    }
+}
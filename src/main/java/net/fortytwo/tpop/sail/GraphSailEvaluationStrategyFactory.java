@@ -0,0 +1,27 @@
+package net.fortytwo.tpop.sail;
+
+import org.eclipse.rdf4j.query.Dataset;
+import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
+import org.eclipse.rdf4j.query.algebra.evaluation.TripleSource;
+import org.eclipse.rdf4j.query.algebra.evaluation.federation.FederatedServiceResolver;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.StrictEvaluationStrategyFactory;
+
+/**
+ * A factory for evaluation strategies which have direct access to a GraphSail's data store
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+class GraphSailEvaluationStrategyFactory extends StrictEvaluationStrategyFactory {
+    private final DataStore dataStore;
+
+    GraphSailEvaluationStrategyFactory(final FederatedServiceResolver resolver, final DataStore dataStore) {
+        super(resolver);
+        this.dataStore = dataStore;
+    }
+
+    @Override
+    public EvaluationStrategy createEvaluationStrategy(final Dataset dataset, final TripleSource tripleSource) {
+        return new GraphSailEvaluationStrategy(tripleSource, dataset, getFederatedServiceResolver(),
+                getQuerySolutionCacheThreshold(), dataStore);
+    }
+}
@@ -8,8 +8,6 @@ import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.sail.SailException;
 import org.eclipse.rdf4j.sail.base.SailSink;
 
-import java.util.Set;
-
 class GraphSailSink implements SailSink {
     private final DataStore dataStore;
 
@@ -45,13 +43,9 @@ class GraphSailSink implements SailSink {
 
     @Override
     public void clear(Resource... contexts) throws SailException {
-        Set<Resource> contextSet = contexts.length == 0 ? null : dataStore.createNullSafeSetOfContexts(contexts);
-
-        CloseableIteration<? extends Statement, SailException> edges = dataStore.getAllStatements();
-        if (0 < contexts.length) {
-            edges = IterUtils.filter(edges,
-                    st -> contextSet.contains(st.getContext()));
-        }
+        CloseableIteration<? extends Statement, SailException> edges = 0 == contexts.length
+                ? dataStore.getAllStatements()
+                : dataStore.getContextStatements(contexts);
 
         dataStore.removeIteratorStatements(edges);
     }
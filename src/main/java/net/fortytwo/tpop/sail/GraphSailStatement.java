@@ -3,19 +3,119 @@ package net.fortytwo.tpop.sail;
 import org.apache.tinkerpop.gremlin.structure.Edge;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.Value;
-import org.eclipse.rdf4j.model.impl.ContextStatement;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 
-class GraphSailStatement extends ContextStatement {
-    private final Edge edge;
+import java.util.Objects;
 
-    GraphSailStatement(
-            final Edge edge, final Resource subject, final IRI predicate, final Value object, final Resource context) {
-        super(subject, predicate, object, context);
+/**
+ * A statement backed by an edge, whose subject, predicate, object and context are materialized
+ * from the graph only when first accessed, and then remembered.
+ * The context is read from the edge up front, however, as the properties of an edge are lost when it is removed.
+ * Statements which are filtered out or merely counted therefore never construct the values they do not read.
+ * Equality and hash codes agree with those of any other Statement implementation.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+class GraphSailStatement implements Statement {
+    private static final long serialVersionUID = 2783425736158474380L;
+
+    private final transient Edge edge;
+    private final transient DataStore dataStore;
+    // the context of the edge, as stored, or null for the default graph
+    private final transient String contextValue;
+
+    private Resource subject;
+    private IRI predicate;
+    private Value object;
+    private Resource context;
+    private boolean contextMaterialized;
+
+    GraphSailStatement(final Edge edge, final String contextValue, final DataStore dataStore) {
         this.edge = edge;
+        this.contextValue = contextValue;
+        this.dataStore = dataStore;
     }
 
     Edge getEdge() {
         return edge;
     }
+
+    @Override
+    public Resource getSubject() {
+        if (null == subject) {
+            subject = dataStore.getSubject(edge);
+        }
+        return subject;
+    }
+
+    @Override
+    public IRI getPredicate() {
+        if (null == predicate) {
+            predicate = dataStore.getPredicate(edge);
+        }
+        return predicate;
+    }
+
+    @Override
+    public Value getObject() {
+        if (null == object) {
+            object = dataStore.getObject(edge);
+        }
+        return object;
+    }
+
+    @Override
+    public Resource getContext() {
+        // the context may legitimately be null, so a separate flag is needed
+        if (!contextMaterialized) {
+            context = null == contextValue ? null : dataStore.toContext(contextValue);
+            contextMaterialized = true;
+        }
+        return context;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (this == other) {
+            return true;
+        }
+
+        if (other instanceof GraphSailStatement) {
+            GraphSailStatement that = (GraphSailStatement) other;
+            // statements of the same edge are equal without materializing anything
+            if (dataStore == that.dataStore && edge.equals(that.edge)) {
+                return true;
+            }
+        }
+
+        if (other instanceof Statement) {
+            Statement that = (Statement) other;
+
+            // compare objects first, as they are most likely to differ
+            return getObject().equals(that.getObject())
+                    && getSubject().equals(that.getSubject())
+                    && getPredicate().equals(that.getPredicate())
+                    && Objects.equals(getContext(), that.getContext());
+        }
+
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getSubject(), getPredicate(), getObject(), getContext());
+    }
+
+    @Override
+    public String toString() {
+        return "(" + getSubject() + ", " + getPredicate() + ", " + getObject() + ") [" + getContext() + "]";
+    }
+
+    // the edge cannot be serialized, so a fully materialized copy is serialized instead
+    private Object writeReplace() {
+        return SimpleValueFactory.getInstance().createStatement(
+                getSubject(), getPredicate(), getObject(), getContext());
+    }
 }
@@ -17,9 +17,11 @@ class GraphSailStore implements SailStore {
 
     private final DataStore dataStore;
     private final SailSource sailSource;
+    private final EvaluationStatistics evaluationStatistics;
 
     GraphSailStore(DataStore dataStore) {
         this.dataStore = dataStore;
+        this.evaluationStatistics = new GraphSailEvaluationStatistics(dataStore);
         sailSource = new BackingSailSource() {
             @Override
             public SailSink sink(IsolationLevel isolationLevel) throws SailException {
@@ -40,8 +42,7 @@ class GraphSailStore implements SailStore {
 
     @Override
     public EvaluationStatistics getEvaluationStatistics() {
-        // TODO
-        return new EvaluationStatistics();
+        return evaluationStatistics;
     }
 
     @Override
@@ -0,0 +1,64 @@
+package net.fortytwo.tpop.sail;
+
+/**
+ * A HyperLogLog sketch for estimating the number of distinct elements added to it, in constant space.
+ * Elements cannot be removed, so after deletions the estimate is an upper bound.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+class HyperLogLog {
+    private static final int DEFAULT_PRECISION = 10;
+
+    private final int precision;
+    private final byte[] registers;
+
+    HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    HyperLogLog(final int precision) {
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    synchronized void add(final Object element) {
+        long hash = mix(element.hashCode());
+        int index = (int) (hash >>> (64 - precision));
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    synchronized long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (0 == register) {
+                zeros++;
+            }
+        }
+
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+
+        // small-range correction
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    // the finalizer of MurmurHash3, spreading a 32-bit hash code over 64 bits
+    private static long mix(final int hashCode) {
+        long h = hashCode;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,72 @@
+package net.fortytwo.tpop.sail;
+
+/**
+ * A summary of a parallel import, either in progress or completed
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+public class ImportReport {
+    private final long linesRead;
+    private final long statementsAdded;
+    private final long duplicatesRemoved;
+    private final long elapsedMillis;
+    private final boolean complete;
+
+    ImportReport(final long linesRead,
+                 final long statementsAdded,
+                 final long duplicatesRemoved,
+                 final long elapsedMillis,
+                 final boolean complete) {
+        this.linesRead = linesRead;
+        this.statementsAdded = statementsAdded;
+        this.duplicatesRemoved = duplicatesRemoved;
+        this.elapsedMillis = elapsedMillis;
+        this.complete = complete;
+    }
+
+    /**
+     * @return the number of input lines read so far, including blank lines and comments
+     */
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+    /**
+     * @return the number of statements added to the sail so far, including any duplicates later removed
+     */
+    public long getStatementsAdded() {
+        return statementsAdded;
+    }
+
+    /**
+     * @return the number of duplicate statements removed at the end of the import, if unique statements are enforced
+     */
+    public long getDuplicatesRemoved() {
+        return duplicatesRemoved;
+    }
+
+    /**
+     * @return the time since the beginning of the import, including, once complete, deferred index maintenance
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return whether the import has completed, as opposed to being in progress
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public double getStatementsPerSecond() {
+        return 0 == elapsedMillis ? statementsAdded * 1000.0 : statementsAdded * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportReport{linesRead=" + linesRead + ", statementsAdded=" + statementsAdded
+                + ", duplicatesRemoved=" + duplicatesRemoved + ", elapsedMillis=" + elapsedMillis
+                + ", statementsPerSecond=" + Math.round(getStatementsPerSecond()) + ", complete=" + complete + "}";
+    }
+}
@@ -0,0 +1,52 @@
+package net.fortytwo.tpop.sail;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A concurrent pool of canonical instances of immutable values, such as vocabulary IRIs,
+ * so that the number of live instances scales with the size of the vocabulary rather than that of a result.
+ * The pool holds at most a fixed number of entries; once it is full, arbitrary entries are evicted to make room.
+ * Eviction never affects correctness, as an evicted value is simply created again on its next use.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+class InternPool<K, V> {
+    private final Map<K, V> pool = new ConcurrentHashMap<>();
+    private final int capacity;
+    private final Function<K, V> factory;
+
+    InternPool(final int capacity, final Function<K, V> factory) {
+        this.capacity = capacity;
+        this.factory = factory;
+    }
+
+    V intern(final K key) {
+        V value = pool.get(key);
+        if (null == value) {
+            if (0 == capacity) {
+                return factory.apply(key);
+            }
+            if (pool.size() >= capacity) {
+                evict();
+            }
+            value = pool.computeIfAbsent(key, factory);
+        }
+        return value;
+    }
+
+    int size() {
+        return pool.size();
+    }
+
+    private void evict() {
+        // iteration order of a concurrent hash map is effectively arbitrary with respect to use
+        Iterator<K> keys = pool.keySet().iterator();
+        if (keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+}
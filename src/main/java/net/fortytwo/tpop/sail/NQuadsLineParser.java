@@ -0,0 +1,143 @@
+package net.fortytwo.tpop.sail;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.rio.ntriples.NTriplesUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A parser for single lines of N-Triples or N-Quads, which, unlike a streaming RDF parser, keeps no state between
+ * lines, so that the lines of a document may be parsed independently and in any order.
+ * Terms are delimited here, and parsed by RDF4J's NTriplesUtil.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+class NQuadsLineParser {
+    private final ValueFactory valueFactory;
+    // blank node labels are scoped to a document, so each document's labels are given a distinct prefix
+    private final String bNodePrefix;
+
+    NQuadsLineParser(final ValueFactory valueFactory, final String bNodePrefix) {
+        this.valueFactory = valueFactory;
+        this.bNodePrefix = bNodePrefix;
+    }
+
+    /**
+     * @return the statement on the line, or null if the line is blank or a comment
+     * @throws IllegalArgumentException if the line is not a valid N-Triples or N-Quads statement
+     */
+    Statement parse(final String line) {
+        List<String> terms = new ArrayList<>(4);
+        boolean terminated = false;
+        int i = skipWhitespace(line, 0);
+        while (i < line.length() && '#' != line.charAt(i)) {
+            char c = line.charAt(i);
+            if ('.' == c) {
+                i = skipWhitespace(line, i + 1);
+                if (i < line.length() && '#' != line.charAt(i)) {
+                    throw new IllegalArgumentException("unexpected text after end of statement");
+                }
+                terminated = true;
+                break;
+            }
+
+            int end;
+            switch (c) {
+                case '<':
+                    end = endOfIRI(line, i);
+                    break;
+                case '_':
+                    end = endOfBNode(line, i);
+                    break;
+                case '"':
+                    end = endOfLiteral(line, i);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unexpected character '" + c + "' at column " + (i + 1));
+            }
+            terms.add(line.substring(i, end));
+            i = skipWhitespace(line, end);
+        }
+
+        if (terms.isEmpty() && !terminated) {
+            return null;
+        } else if (!terminated) {
+            throw new IllegalArgumentException("statement is not terminated by '.'");
+        } else if (terms.size() < 3 || terms.size() > 4) {
+            throw new IllegalArgumentException("expected 3 or 4 terms, found " + terms.size());
+        }
+
+        Resource subject = toResource(terms.get(0));
+        IRI predicate = NTriplesUtil.parseURI(terms.get(1), valueFactory);
+        Value object = terms.get(2).startsWith("_:") ? toBNode(terms.get(2))
+                : NTriplesUtil.parseValue(terms.get(2), valueFactory);
+        return 4 == terms.size()
+                ? valueFactory.createStatement(subject, predicate, object, toResource(terms.get(3)))
+                : valueFactory.createStatement(subject, predicate, object);
+    }
+
+    private Resource toResource(final String term) {
+        return term.startsWith("_:") ? toBNode(term) : NTriplesUtil.parseURI(term, valueFactory);
+    }
+
+    private Resource toBNode(final String term) {
+        return valueFactory.createBNode(bNodePrefix + term.substring(2));
+    }
+
+    private static int skipWhitespace(final String line, final int start) {
+        int i = start;
+        while (i < line.length() && (' ' == line.charAt(i) || '\t' == line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int endOfIRI(final String line, final int start) {
+        int end = line.indexOf('>', start);
+        if (end < 0) {
+            throw new IllegalArgumentException("unterminated IRI at column " + (start + 1));
+        }
+        return end + 1;
+    }
+
+    private static int endOfBNode(final String line, final int start) {
+        if (start + 2 >= line.length() || ':' != line.charAt(start + 1)) {
+            throw new IllegalArgumentException("malformed blank node at column " + (start + 1));
+        }
+        int i = start + 2;
+        while (i < line.length() && " \t<\"#".indexOf(line.charAt(i)) < 0) {
+            i++;
+        }
+        // a label may contain, but not end with, a period
+        while ('.' == line.charAt(i - 1)) {
+            i--;
+        }
+        return i;
+    }
+
+    private static int endOfLiteral(final String line, final int start) {
+        int i = start + 1;
+        while (i < line.length() && '"' != line.charAt(i)) {
+            i += '\\' == line.charAt(i) ? 2 : 1;
+        }
+        if (i >= line.length()) {
+            throw new IllegalArgumentException("unterminated literal at column " + (start + 1));
+        }
+        i++;
+
+        if (i < line.length() && '@' == line.charAt(i)) {
+            i++;
+            while (i < line.length() && (Character.isLetterOrDigit(line.charAt(i)) || '-' == line.charAt(i))) {
+                i++;
+            }
+        } else if (line.startsWith("^^<", i)) {
+            i = endOfIRI(line, i + 2);
+        }
+        return i;
+    }
+}
@@ -0,0 +1,330 @@
+package net.fortytwo.tpop.sail;
+
+import com.google.common.base.Preconditions;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.rio.RDFParseException;
+import org.eclipse.rdf4j.sail.SailException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A parallel importer of N-Triples and N-Quads files into a GraphSail.
+ * Input files are read line by line, and split into chunks of lines which are parsed on a fork-join pool.
+ * Each chunk's distinct values are resolved to vertices, or new vertices created for them, in parallel with
+ * those of other chunks, and the chunk's statements are then added as a single batch of edges.
+ * The number of chunks being parsed, resolved or waiting to be added is bounded, so that reading blocks
+ * whenever the later stages fall behind.
+ * <p>
+ * The import is performed as a bulk load, unless one is already in progress, in which case it becomes part of that
+ * load. Statements are visible to readers as soon as their batch has been added.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+public class ParallelImporter {
+    /**
+     * The default number of lines per chunk
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 10000;
+
+    // the end of the batches to add
+    private static final List<DataStore.ResolvedStatement> END = new ArrayList<>();
+
+    private final GraphSail sail;
+    private final int parallelism;
+    private final int chunkSize;
+
+    private Consumer<ImportReport> progressListener;
+
+    /**
+     * Creates an importer which parses chunks of the default size on as many threads as there are processors
+     */
+    public ParallelImporter(final GraphSail sail) {
+        this(sail, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param sail        the sail into which statements are imported
+     * @param parallelism the number of threads which parse chunks and resolve their values
+     * @param chunkSize   the number of lines per chunk, which is also the maximum size of a batch of edges
+     */
+    public ParallelImporter(final GraphSail sail, final int parallelism, final int chunkSize) {
+        Preconditions.checkArgument(parallelism > 0);
+        Preconditions.checkArgument(chunkSize > 0);
+        this.sail = sail;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @param listener a listener which is given a report of the progress of an import each time a batch of
+     *                 statements has been added, or null for no progress reports
+     */
+    public void setProgressListener(final Consumer<ImportReport> listener) {
+        this.progressListener = listener;
+    }
+
+    /**
+     * Imports the statements of the given files, in order. Files whose names end in .gz are decompressed.
+     * Blank nodes are scoped to the file in which they occur.
+     * If any line cannot be parsed, the import stops, leaving the statements of previous batches in the sail.
+     * Vertices already created for the values of batches which are then discarded are deleted again,
+     * unless they have come into use by other statements.
+     *
+     * @return a report of the completed import
+     * @throws IOException       if a file cannot be read
+     * @throws RDFParseException if a line is not a valid N-Triples or N-Quads statement
+     */
+    public ImportReport importFiles(final File... files) throws IOException {
+        DataStore dataStore = sail.getDataStore();
+        if (dataStore.isReadOnly()) {
+            throw new SailException("sail is read-only");
+        }
+
+        return new Import(dataStore, progressListener).execute(files);
+    }
+
+    private static InputStream open(final File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        return file.getName().endsWith(".gz") ? new GZIPInputStream(in) : in;
+    }
+
+    private class Import {
+        private final DataStore dataStore;
+        private final Consumer<ImportReport> listener;
+        private final long startTime = System.currentTimeMillis();
+        // distinguishes the blank nodes of this import from those of any other
+        private final String importId = UUID.randomUUID().toString();
+
+        // enough chunks in flight to keep every parser busy while a batch is being added
+        private final int maxChunksInFlight = 2 * parallelism;
+        private final Semaphore chunksInFlight = new Semaphore(maxChunksInFlight);
+        private final BlockingQueue<List<DataStore.ResolvedStatement>> batches
+                = new LinkedBlockingQueue<>(maxChunksInFlight + 1);
+        private final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        private final AtomicLong linesRead = new AtomicLong();
+        // written only by the thread which adds batches
+        private volatile long statementsAdded;
+
+        private Import(final DataStore dataStore, final Consumer<ImportReport> listener) {
+            this.dataStore = dataStore;
+            this.listener = listener;
+        }
+
+        private ImportReport execute(final File[] files) throws IOException {
+            boolean isOwnLoad = !dataStore.isBulkLoading();
+            if (isOwnLoad) {
+                dataStore.beginBulkLoad();
+            }
+            Thread adder = new Thread(this::addBatches, "graphsail-import-" + importId);
+            adder.setDaemon(true);
+            adder.start();
+
+            long duplicatesRemoved = 0;
+            try {
+                for (int i = 0; i < files.length && null == failure.get(); i++) {
+                    read(files[i], i);
+                }
+            } finally {
+                // every chunk is added, or discarded after a failure, before the load is ended
+                chunksInFlight.acquireUninterruptibly(maxChunksInFlight);
+                batches.add(END);
+                pool.shutdown();
+                joinUninterruptibly(adder);
+                if (isOwnLoad) {
+                    duplicatesRemoved = dataStore.endBulkLoad().getDuplicatesRemoved();
+                }
+                dataStore.getSailChangedHelper().flush();
+            }
+
+            Throwable t = failure.get();
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            } else if (t instanceof Error) {
+                throw (Error) t;
+            } else if (null != t) {
+                throw new SailException(t);
+            }
+            return createReport(duplicatesRemoved, true);
+        }
+
+        private void read(final File file, final int fileIndex) throws IOException {
+            NQuadsLineParser parser = new NQuadsLineParser(
+                    dataStore.getValueFactory(), "genid-" + importId + "-" + fileIndex + "-");
+            try (BufferedReader reader
+                         = new BufferedReader(new InputStreamReader(open(file), StandardCharsets.UTF_8))) {
+                long firstLine = 1;
+                List<String> lines = new ArrayList<>(chunkSize);
+                String line;
+                while (null == failure.get() && null != (line = reader.readLine())) {
+                    lines.add(line);
+                    if (lines.size() == chunkSize) {
+                        submit(file, parser, firstLine, lines);
+                        firstLine += lines.size();
+                        lines = new ArrayList<>(chunkSize);
+                    }
+                }
+                if (!lines.isEmpty() && null == failure.get()) {
+                    submit(file, parser, firstLine, lines);
+                }
+            }
+        }
+
+        // blocks while the maximum number of chunks are in flight
+        private void submit(final File file,
+                            final NQuadsLineParser parser,
+                            final long firstLine,
+                            final List<String> lines) throws InterruptedIOException {
+            try {
+                chunksInFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("import interrupted");
+            }
+            linesRead.addAndGet(lines.size());
+            pool.execute(() -> batches.add(resolve(file, parser, firstLine, lines)));
+        }
+
+        // parses a chunk, and resolves the distinct values of its statements to vertices.
+        // After a failure, the statements resolved so far are returned all the same, to be discarded
+        private List<DataStore.ResolvedStatement> resolve(final File file,
+                                                           final NQuadsLineParser parser,
+                                                           final long firstLine,
+                                                           final List<String> lines) {
+            List<DataStore.ResolvedStatement> batch = new ArrayList<>(lines.size());
+            try {
+                Map<Value, Vertex> vertices = new HashMap<>();
+                for (int i = 0; i < lines.size(); i++) {
+                    Statement st;
+                    try {
+                        st = parser.parse(lines.get(i));
+                    } catch (IllegalArgumentException e) {
+                        throw new RDFParseException(file.getName() + ": " + e.getMessage(), firstLine + i, -1);
+                    }
+                    if (null != st) {
+                        batch.add(new DataStore.ResolvedStatement(st,
+                                vertices.computeIfAbsent(st.getSubject(), dataStore::getOrCreateVertexByValue),
+                                vertices.computeIfAbsent(st.getObject(), dataStore::getOrCreateVertexByValue)));
+                    }
+                }
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+            return batch;
+        }
+
+        // adds batches of statements, in the order in which they were resolved, until the end of the import.
+        // After a failure, the remaining batches are discarded, but the queue is drained all the same,
+        // so that the reading thread is not left waiting for chunks in flight
+        private void addBatches() {
+            boolean interrupted = false;
+            while (true) {
+                List<DataStore.ResolvedStatement> batch;
+                try {
+                    batch = batches.take();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    failure.compareAndSet(null, new InterruptedIOException("import interrupted"));
+                    continue;
+                }
+                if (END == batch) {
+                    break;
+                }
+
+                try {
+                    if (null == failure.get()) {
+                        add(batch);
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+                try {
+                    // a batch which is not added, or only partly added, may leave vertices which no statement uses
+                    if (null != failure.get()) {
+                        discard(batch);
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    chunksInFlight.release();
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // deletes any vertices which were created for the values of a batch which is not added
+        private void discard(final List<DataStore.ResolvedStatement> batch) {
+            Set<Value> values = new HashSet<>();
+            for (DataStore.ResolvedStatement resolved : batch) {
+                values.add(resolved.getStatement().getSubject());
+                values.add(resolved.getStatement().getObject());
+            }
+            values.forEach(dataStore::removeIfIsolated);
+        }
+
+        private void add(final List<DataStore.ResolvedStatement> batch) {
+            // statements whose vertices were deleted by another writer in the meantime are added individually
+            for (Statement st : dataStore.addStatements(batch)) {
+                Resource context = st.getContext();
+                if (null == context) {
+                    dataStore.addStatement(st.getSubject(), st.getPredicate(), st.getObject());
+                } else {
+                    dataStore.addStatement(st.getSubject(), st.getPredicate(), st.getObject(), context);
+                }
+            }
+            statementsAdded += batch.size();
+
+            if (null != listener) {
+                listener.accept(createReport(0, false));
+            }
+        }
+
+        private ImportReport createReport(final long duplicatesRemoved, final boolean complete) {
+            return new ImportReport(linesRead.get(), statementsAdded, duplicatesRemoved,
+                    System.currentTimeMillis() - startTime, complete);
+        }
+
+        private void joinUninterruptibly(final Thread thread) {
+            boolean interrupted = false;
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package net.fortytwo.tpop.sail;
+
+import com.google.common.collect.Iterators;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.datatypes.XMLDatatypeUtil;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+import org.eclipse.rdf4j.query.algebra.Compare;
+
+import javax.xml.datatype.DatatypeConstants;
+import javax.xml.datatype.XMLGregorianCalendar;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * An in-memory index of statement edges with literal objects, ordered within each predicate by the native values
+ * of their objects, so that comparisons of an object with a constant are answered by a range scan
+ * rather than by matching every statement of the predicate.
+ * Numeric literals of all datatypes are ordered together, as doubles, while xsd:dateTime and xsd:date literals are
+ * each ordered by their position on the time line.
+ * These orders only approximate those of SPARQL comparison, which may compare numbers more precisely, or, where
+ * a float is involved, less precisely, and which leaves times without a time zone partially ordered.
+ * A range therefore includes every edge whose object may satisfy the comparisons it was formed from,
+ * and possibly others, and the comparisons themselves are still evaluated.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+class RangeIndex {
+    enum Space {Numeric, DateTime, Date}
+
+    // the furthest that a time without a time zone may be from the same time in UTC
+    private static final long MAX_TIMEZONE_OFFSET = 14 * 60 * 60 * 1000L;
+
+    // edges by label and space, then by the key of their object
+    private final Map<List<Object>, NavigableMap<Object, Set<Edge>>> edgesByLabel = new ConcurrentHashMap<>();
+
+    void add(final Edge edge, final Literal object) {
+        Space space = getSpace(object.getDatatype());
+        Object key = null == space ? null : toKey(object, space);
+        if (null != key) {
+            edgesByLabel.computeIfAbsent(Arrays.asList(edge.label(), space), k -> new ConcurrentSkipListMap<>())
+                    .compute(key, (k, edges) -> {
+                        Set<Edge> result = null == edges ? ConcurrentHashMap.newKeySet() : edges;
+                        result.add(edge);
+                        return result;
+                    });
+        }
+    }
+
+    void remove(final Edge edge, final Literal object) {
+        Space space = getSpace(object.getDatatype());
+        Object key = null == space ? null : toKey(object, space);
+        NavigableMap<Object, Set<Edge>> edgesByKey = null == key
+                ? null : edgesByLabel.get(Arrays.asList(edge.label(), space));
+        if (null != edgesByKey) {
+            edgesByKey.computeIfPresent(key, (k, edges) -> {
+                edges.remove(edge);
+                return edges.isEmpty() ? null : edges;
+            });
+        }
+    }
+
+    /**
+     * @return the edges with the given label whose objects fall within the range
+     */
+    Iterator<Edge> get(final String label, final Range range) {
+        NavigableMap<Object, Set<Edge>> edgesByKey = getRange(label, range);
+        return null == edgesByKey
+                ? Collections.emptyIterator()
+                : Iterators.concat(Iterators.transform(edgesByKey.values().iterator(), Set::iterator));
+    }
+
+    /**
+     * @param limit a number of edges beyond which counting stops
+     * @return the number of edges with the given label whose objects fall within the range, up to the limit
+     */
+    long count(final String label, final Range range, final long limit) {
+        NavigableMap<Object, Set<Edge>> edgesByKey = getRange(label, range);
+        long count = 0;
+        if (null != edgesByKey) {
+            for (Set<Edge> edges : edgesByKey.values()) {
+                count += edges.size();
+                if (count >= limit) {
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    private NavigableMap<Object, Set<Edge>> getRange(final String label, final Range range) {
+        NavigableMap<Object, Set<Edge>> edgesByKey = edgesByLabel.get(Arrays.asList(label, range.space));
+        if (null == edgesByKey) {
+            return null;
+        }
+
+        if (null != range.low && null != range.high) {
+            // a range formed from contradictory comparisons is empty
+            return compareKeys(range.low, range.high) > 0
+                    ? null : edgesByKey.subMap(range.low, true, range.high, true);
+        } else if (null != range.low) {
+            return edgesByKey.tailMap(range.low, true);
+        } else if (null != range.high) {
+            return edgesByKey.headMap(range.high, true);
+        } else {
+            return edgesByKey;
+        }
+    }
+
+    // keys of the same space are of the same type, and are ordered naturally
+    @SuppressWarnings("unchecked")
+    private static int compareKeys(final Object a, final Object b) {
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+
+    private static Space getSpace(final IRI datatype) {
+        if (XMLDatatypeUtil.isNumericDatatype(datatype)) {
+            return Space.Numeric;
+        } else if (XMLSchema.DATETIME.equals(datatype)) {
+            return Space.DateTime;
+        } else if (XMLSchema.DATE.equals(datatype)) {
+            return Space.Date;
+        } else {
+            return null;
+        }
+    }
+
+    // returns null for a literal which is not a valid value of its datatype, and so is never found in a range
+    private static Object toKey(final Literal literal, final Space space) {
+        try {
+            if (Space.Numeric == space) {
+                // the same value as compared by SPARQL whenever a double is involved; otherwise,
+                // an approximation which preserves order
+                return literal.doubleValue();
+            }
+
+            XMLGregorianCalendar calendar = literal.calendarValue();
+            if (DatatypeConstants.FIELD_UNDEFINED == calendar.getTimezone()) {
+                calendar = (XMLGregorianCalendar) calendar.clone();
+                calendar.setTimezone(0);
+            }
+            return calendar.toGregorianCalendar().getTimeInMillis();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * An inclusive range of keys within a space
+     */
+    static class Range {
+        private final Space space;
+        // null if unbounded
+        private final Object low;
+        private final Object high;
+
+        private Range(final Space space, final Object low, final Object high) {
+            this.space = space;
+            this.low = low;
+            this.high = high;
+        }
+
+        /**
+         * @param operator a comparison of an object with the given constant, the object being the left operand
+         * @return a range which includes all literals satisfying the comparison, or null if the comparison
+         * cannot be answered from the index
+         */
+        static Range forComparison(final Compare.CompareOp operator, final Literal constant) {
+            Space space = getSpace(constant.getDatatype());
+            Object key = null == space ? null : toKey(constant, space);
+            if (null == key) {
+                return null;
+            }
+
+            Object low = key;
+            Object high = key;
+            if (Space.Numeric == space) {
+                // a comparison with a float is made at float precision, so the bounds are widened to include
+                // every double which rounds to the same float as the constant
+                float rounded = (float) (double) key;
+                low = (double) Math.nextDown(rounded);
+                high = (double) Math.nextUp(rounded);
+            } else {
+                low = (Long) key - MAX_TIMEZONE_OFFSET;
+                high = (Long) key + MAX_TIMEZONE_OFFSET;
+            }
+
+            switch (operator) {
+                case EQ:
+                    return new Range(space, low, high);
+                case LT:
+                case LE:
+                    return new Range(space, null, high);
+                case GT:
+                case GE:
+                    return new Range(space, low, null);
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * @return a range which includes all literals in both ranges, or this range if the ranges are of
+         * different spaces, and have no literals in common
+         */
+        Range intersect(final Range other) {
+            if (space != other.space) {
+                return this;
+            }
+            return new Range(space, max(low, other.low), min(high, other.high));
+        }
+
+        private static Object max(final Object a, final Object b) {
+            return null == a ? b : null == b ? a : compareKeys(a, b) >= 0 ? a : b;
+        }
+
+        private static Object min(final Object a, final Object b) {
+            return null == a ? b : null == b ? a : compareKeys(a, b) <= 0 ? a : b;
+        }
+    }
+}
@@ -12,4 +12,9 @@ interface Schema {
     interface EdgeProperties {
         String CONTEXT = "context";
     }
+
+    interface CompositeKeys {
+        String LITERAL = GraphIndex.compositeKey(
+                VertexProperties.VALUE, VertexProperties.DATATYPE, VertexProperties.LANGUAGE);
+    }
 }
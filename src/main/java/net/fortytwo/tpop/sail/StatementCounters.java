@@ -0,0 +1,93 @@
+package net.fortytwo.tpop.sail;
+
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cardinality counters over the statement edges of a graph, kept up to date incrementally as statements
+ * are added and removed: the total number of statements, the in- and out-degree of each vertex,
+ * sketches of the number of distinct subjects and objects of each predicate,
+ * and the number of distinct statements (as opposed to statement edges) overall and in each context.
+ * Per-predicate and per-context statement counts are provided by the corresponding edge indices.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+class StatementCounters {
+    private static final Object NULL_CONTEXT = new Object();
+
+    private final AtomicLong totalStatements = new AtomicLong();
+    private final AtomicLong distinctStatements = new AtomicLong();
+    private final Map<Object, Long> distinctStatementsByContext = new ConcurrentHashMap<>();
+    private final Map<Object, Long> outDegrees = new ConcurrentHashMap<>();
+    private final Map<Object, Long> inDegrees = new ConcurrentHashMap<>();
+    private final Map<String, HyperLogLog> distinctSubjects = new ConcurrentHashMap<>();
+    private final Map<String, HyperLogLog> distinctObjects = new ConcurrentHashMap<>();
+
+    void statementAdded(final Edge edge) {
+        Object outId = edge.outVertex().id();
+        Object inId = edge.inVertex().id();
+        totalStatements.incrementAndGet();
+        outDegrees.merge(outId, 1L, Long::sum);
+        inDegrees.merge(inId, 1L, Long::sum);
+        distinctSubjects.computeIfAbsent(edge.label(), label -> new HyperLogLog()).add(outId);
+        distinctObjects.computeIfAbsent(edge.label(), label -> new HyperLogLog()).add(inId);
+    }
+
+    void statementRemoved(final Edge edge) {
+        totalStatements.decrementAndGet();
+        decrement(outDegrees, edge.outVertex().id());
+        decrement(inDegrees, edge.inVertex().id());
+    }
+
+    void distinctStatementAdded(final String context) {
+        distinctStatements.incrementAndGet();
+        distinctStatementsByContext.merge(wrap(context), 1L, Long::sum);
+    }
+
+    void distinctStatementRemoved(final String context) {
+        distinctStatements.decrementAndGet();
+        decrement(distinctStatementsByContext, wrap(context));
+    }
+
+    long getTotalStatements() {
+        return totalStatements.get();
+    }
+
+    long getDistinctStatements() {
+        return distinctStatements.get();
+    }
+
+    long getDistinctStatements(final String context) {
+        return distinctStatementsByContext.getOrDefault(wrap(context), 0L);
+    }
+
+    long getOutDegree(final Vertex vertex) {
+        return outDegrees.getOrDefault(vertex.id(), 0L);
+    }
+
+    long getInDegree(final Vertex vertex) {
+        return inDegrees.getOrDefault(vertex.id(), 0L);
+    }
+
+    long getDistinctSubjects(final String predicate) {
+        HyperLogLog sketch = distinctSubjects.get(predicate);
+        return null == sketch ? 0 : sketch.estimate();
+    }
+
+    long getDistinctObjects(final String predicate) {
+        HyperLogLog sketch = distinctObjects.get(predicate);
+        return null == sketch ? 0 : sketch.estimate();
+    }
+
+    private Object wrap(final String context) {
+        return null == context ? NULL_CONTEXT : context;
+    }
+
+    private void decrement(final Map<Object, Long> degrees, final Object id) {
+        degrees.computeIfPresent(id, (k, degree) -> 1 == degree ? null : degree - 1);
+    }
+}
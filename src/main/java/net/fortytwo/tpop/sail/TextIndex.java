@@ -0,0 +1,116 @@
+package net.fortytwo.tpop.sail;
+
+import com.google.common.collect.Iterators;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-memory inverted index of literal vertices by the character n-grams of their labels,
+ * through which the literals containing a given string are found without matching every literal.
+ * Labels are case-folded character by character before they are indexed, so that a single index serves both
+ * case-sensitive and case-insensitive searches. A search therefore finds every literal containing the string,
+ * and possibly others, and the text filter which called for it is still evaluated.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+class TextIndex {
+    static final int GRAM_LENGTH = 3;
+
+    private final Map<String, Set<Vertex>> verticesByGram = new ConcurrentHashMap<>();
+
+    void add(final Vertex vertex, final String label) {
+        for (String gram : getGrams(fold(label), false)) {
+            verticesByGram.compute(gram, (k, vertices) -> {
+                Set<Vertex> result = null == vertices ? ConcurrentHashMap.newKeySet() : vertices;
+                result.add(vertex);
+                return result;
+            });
+        }
+    }
+
+    void remove(final Vertex vertex, final String label) {
+        for (String gram : getGrams(fold(label), false)) {
+            verticesByGram.computeIfPresent(gram, (k, vertices) -> {
+                vertices.remove(vertex);
+                return vertices.isEmpty() ? null : vertices;
+            });
+        }
+    }
+
+    /**
+     * @param grams n-grams, as produced by getGrams, which must all occur in a literal
+     * @return the literal vertices in whose labels all of the grams occur
+     */
+    Iterator<Vertex> get(final Set<String> grams) {
+        Set<Vertex> smallest = getSmallest(grams);
+        if (null == smallest) {
+            return Collections.emptyIterator();
+        }
+
+        return Iterators.filter(smallest.iterator(), vertex -> {
+            for (String gram : grams) {
+                Set<Vertex> vertices = verticesByGram.get(gram);
+                if (null == vertices || !vertices.contains(vertex)) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * @return an upper bound on the number of literal vertices in whose labels all of the grams occur
+     */
+    long count(final Set<String> grams) {
+        Set<Vertex> smallest = getSmallest(grams);
+        return null == smallest ? 0 : smallest.size();
+    }
+
+    private Set<Vertex> getSmallest(final Set<String> grams) {
+        Set<Vertex> smallest = null;
+        for (String gram : grams) {
+            Set<Vertex> vertices = verticesByGram.get(gram);
+            if (null == vertices) {
+                return null;
+            }
+            if (null == smallest || vertices.size() < smallest.size()) {
+                smallest = vertices;
+            }
+        }
+        return smallest;
+    }
+
+    /**
+     * Folds the case of each character, so that any two characters which match case-insensitively are folded
+     * to the same character. Unlike a conversion of the whole string, this preserves substrings.
+     */
+    static String fold(final String text) {
+        StringBuilder folded = new StringBuilder(text.length());
+        text.codePoints().forEach(c -> folded.appendCodePoint(Character.toLowerCase(Character.toUpperCase(c))));
+        return folded.toString();
+    }
+
+    /**
+     * @param folded    a case-folded string
+     * @param asciiOnly whether to omit any gram containing a non-ASCII character
+     * @return the n-grams of the string, in order of occurrence; none if it is shorter than a single gram
+     */
+    static Set<String> getGrams(final String folded, final boolean asciiOnly) {
+        Set<String> grams = new LinkedHashSet<>();
+        int start = 0;
+        for (int i = 0; i < folded.length(); i++) {
+            if (asciiOnly && folded.charAt(i) > 127) {
+                start = i + 1;
+            } else if (i + 1 - start >= GRAM_LENGTH) {
+                grams.add(folded.substring(i + 1 - GRAM_LENGTH, i + 1));
+            }
+        }
+        return grams;
+    }
+}
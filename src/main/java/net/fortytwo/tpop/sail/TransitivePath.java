@@ -0,0 +1,283 @@
+package net.fortytwo.tpop.sail;
+
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.LookAheadIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.ArbitraryLengthPath;
+import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.ZeroLengthPath;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * A property path of the form p* or p+ (or ^p* or ^p+), evaluated as a breadth-first search over the edges
+ * of a single label.
+ * As in the standard evaluation strategy, each pair of endpoints is reported only once, however many paths
+ * connect them, and no bindings other than those of the endpoints are produced.
+ * The search is lazy, so that a LIMIT stops it early, and stops as soon as a bound end point is found.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+class TransitivePath {
+    private final Var startVar;
+    private final Var endVar;
+    private final String label;
+    // the direction of the edges followed from start to end
+    private final Direction direction;
+    private final boolean includeZeroLength;
+
+    private TransitivePath(final Var startVar,
+                           final Var endVar,
+                           final String label,
+                           final Direction direction,
+                           final boolean includeZeroLength) {
+        this.startVar = startVar;
+        this.endVar = endVar;
+        this.label = label;
+        this.direction = direction;
+        this.includeZeroLength = includeZeroLength;
+    }
+
+    /**
+     * @return the compiled path, or null if it is anything other than the transitive closure of a single
+     * predicate over the default graph, or its inverse
+     */
+    static TransitivePath compile(final ArbitraryLengthPath path) {
+        if (null != path.getContextVar() || path.getMinLength() > 1
+                || !(path.getPathExpression() instanceof StatementPattern)) {
+            return null;
+        }
+
+        StatementPattern sp = (StatementPattern) path.getPathExpression();
+        Value predicate = sp.getPredicateVar().getValue();
+        if (null != sp.getContextVar() || sp.getScope() != StatementPattern.Scope.DEFAULT_CONTEXTS
+                || !(predicate instanceof IRI)) {
+            return null;
+        }
+
+        String start = path.getSubjectVar().getName();
+        String end = path.getObjectVar().getName();
+        if (start.equals(end)) {
+            return null;
+        }
+
+        Direction direction;
+        if (start.equals(sp.getSubjectVar().getName()) && end.equals(sp.getObjectVar().getName())) {
+            direction = Direction.OUT;
+        } else if (end.equals(sp.getSubjectVar().getName()) && start.equals(sp.getObjectVar().getName())) {
+            direction = Direction.IN;
+        } else {
+            return null;
+        }
+
+        return new TransitivePath(path.getSubjectVar(), path.getObjectVar(), predicate.stringValue(), direction,
+                0 == path.getMinLength());
+    }
+
+    CloseableIteration<BindingSet, QueryEvaluationException> evaluate(final DataStore dataStore,
+                                                                     final BindingSet bindings) {
+        Value start = getVarValue(startVar, bindings);
+        Value end = getVarValue(endVar, bindings);
+
+        if (null != start) {
+            return new Search(dataStore, bindings, Collections.singleton(start).iterator(), startVar, endVar,
+                    direction, end);
+        } else if (null != end) {
+            // search backwards from the end point
+            return new Search(dataStore, bindings, Collections.singleton(end).iterator(), endVar, startVar,
+                    direction.opposite(), null);
+        } else {
+            return new Search(dataStore, bindings, getOrigins(dataStore), startVar, endVar, direction, null);
+        }
+    }
+
+    /**
+     * Evaluates a zero-length path whose end points are both unbound, binding both to each subject and object
+     * in the graph. These are exactly the vertices of the graph, so no statements need to be scanned.
+     *
+     * @return the solutions, or null if the path is to be evaluated as usual
+     */
+    static CloseableIteration<BindingSet, QueryEvaluationException> evaluate(final ZeroLengthPath path,
+                                                                            final DataStore dataStore,
+                                                                            final BindingSet bindings) {
+        if (null != path.getContextVar()
+                || null != getVarValue(path.getSubjectVar(), bindings)
+                || null != getVarValue(path.getObjectVar(), bindings)) {
+            return null;
+        }
+
+        Iterator<Vertex> vertices = dataStore.getAllStatementVertices();
+        return new LookAheadIteration<BindingSet, QueryEvaluationException>() {
+            @Override
+            protected BindingSet getNextElement() throws QueryEvaluationException {
+                if (!vertices.hasNext()) {
+                    return null;
+                }
+
+                Value value = dataStore.toValue(vertices.next());
+                QueryBindingSet solution = new QueryBindingSet(bindings);
+                solution.addBinding(path.getSubjectVar().getName(), value);
+                solution.addBinding(path.getObjectVar().getName(), value);
+                return solution;
+            }
+        };
+    }
+
+    private static Value getVarValue(final Var var, final BindingSet bindings) {
+        return var.hasValue() ? var.getValue() : bindings.getValue(var.getName());
+    }
+
+    // the possible start points of a path with no bound end point
+    private Iterator<Vertex> getOrigins(final DataStore dataStore) {
+        if (includeZeroLength) {
+            return dataStore.getAllStatementVertices();
+        }
+
+        Iterator<Edge> edges = dataStore.getEdges(dataStore.planAccess(null, label, null, null));
+        Set<Vertex> origins = new HashSet<>();
+        while (edges.hasNext()) {
+            Edge edge = edges.next();
+            origins.add(Direction.OUT == direction ? edge.outVertex() : edge.inVertex());
+        }
+        return origins.iterator();
+    }
+
+    /**
+     * A breadth-first search from each of a series of origins, each of which is either a vertex or a value
+     */
+    private class Search extends LookAheadIteration<BindingSet, QueryEvaluationException> {
+        private final DataStore dataStore;
+        private final BindingSet bindings;
+        private final Iterator<?> origins;
+        private final Var originVar;
+        private final Var reachedVar;
+        private final Direction searchDirection;
+        private final Value target;
+
+        private Vertex targetVertex;
+        private Value originValue;
+        private Set<Vertex> visited;
+        private Queue<Vertex> queue;
+        private Iterator<Vertex> neighbors;
+
+        private Search(final DataStore dataStore,
+                       final BindingSet bindings,
+                       final Iterator<?> origins,
+                       final Var originVar,
+                       final Var reachedVar,
+                       final Direction searchDirection,
+                       final Value target) {
+            this.dataStore = dataStore;
+            this.bindings = bindings;
+            this.origins = origins;
+            this.originVar = originVar;
+            this.reachedVar = reachedVar;
+            this.searchDirection = searchDirection;
+            this.target = target;
+            if (null != target) {
+                targetVertex = dataStore.getVertexByValue(target);
+            }
+        }
+
+        @Override
+        protected BindingSet getNextElement() throws QueryEvaluationException {
+            while (true) {
+                if (null == visited) {
+                    if (!origins.hasNext()) {
+                        return null;
+                    }
+                    BindingSet zeroLength = startSearch(origins.next());
+                    if (null != zeroLength) {
+                        return zeroLength;
+                    }
+                }
+
+                while (null != neighbors) {
+                    if (neighbors.hasNext()) {
+                        Vertex next = neighbors.next();
+                        if (visited.add(next)) {
+                            queue.add(next);
+                            if (null == target || next.equals(targetVertex)) {
+                                if (null != target) {
+                                    // there is nothing more to find
+                                    endSearch();
+                                }
+                                return toSolution(dataStore.toValue(next));
+                            }
+                        }
+                    } else {
+                        Vertex v = queue.poll();
+                        neighbors = null == v ? null : dataStore.getAdjacentVertices(v, searchDirection, label);
+                    }
+                }
+
+                endSearch();
+            }
+        }
+
+        // returns the zero-length solution of the origin, if any
+        private BindingSet startSearch(final Object origin) {
+            Vertex originVertex;
+            if (origin instanceof Vertex) {
+                originVertex = (Vertex) origin;
+                originValue = dataStore.toValue(originVertex);
+            } else {
+                originValue = (Value) origin;
+                originVertex = dataStore.getVertexByValue(originValue);
+            }
+
+            visited = new HashSet<>();
+            queue = new ArrayDeque<>();
+            // an origin which is not in the graph reaches nothing but itself
+            neighbors = null == originVertex
+                    ? null : dataStore.getAdjacentVertices(originVertex, searchDirection, label);
+            if (null != target && null == targetVertex) {
+                neighbors = null;
+            }
+
+            if (includeZeroLength) {
+                if (null != originVertex) {
+                    visited.add(originVertex);
+                }
+                if (null == target || target.equals(originValue)) {
+                    if (null != target) {
+                        endSearch();
+                    }
+                    return toSolution(originValue);
+                }
+            }
+
+            return null;
+        }
+
+        private void endSearch() {
+            visited = null;
+            queue = null;
+            neighbors = null;
+        }
+
+        private BindingSet toSolution(final Value reached) {
+            QueryBindingSet solution = new QueryBindingSet(bindings);
+            if (!solution.hasBinding(originVar.getName())) {
+                solution.addBinding(originVar.getName(), originValue);
+            }
+            if (!solution.hasBinding(reachedVar.getName())) {
+                solution.addBinding(reachedVar.getName(), reached);
+            }
+            return solution;
+        }
+    }
+}
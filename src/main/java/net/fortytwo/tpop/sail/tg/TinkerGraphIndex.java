@@ -2,12 +2,29 @@ package net.fortytwo.tpop.sail.tg;
 
 import com.google.common.base.Preconditions;
 import net.fortytwo.tpop.sail.GraphIndex;
+import org.apache.tinkerpop.gremlin.structure.Property;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
 import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A GraphIndex for TinkerGraph.
+ * Single-key indices are delegated to TinkerGraph's own (automatic) vertex indices,
+ * while composite indices, which TinkerGraph does not support, are maintained in memory as hash maps.
+ */
 public class TinkerGraphIndex extends GraphIndex {
     private final TinkerGraph graph;
 
+    private final Map<List<Object>, Set<Vertex>> compositeIndex = new ConcurrentHashMap<>();
+
     public TinkerGraphIndex(final String key, final TinkerGraph graph) {
         super(key);
         this.graph = graph;
@@ -15,26 +32,69 @@ public class TinkerGraphIndex extends GraphIndex {
 
     @Override
     protected boolean isAutomatic() {
-        return true;
+        return !isComposite();
     }
 
     @Override
     public void initialize() {
-        checkIsProperIndexKey(key);
+        for (String k : keys) {
+            checkIsProperIndexKey(k);
+        }
 
-        if (!keyExists(key)) {
+        if (isComposite()) {
+            graph.vertices().forEachRemaining(this::addInternal);
+        } else if (!keyExists(key)) {
             graph.createIndex(key, Vertex.class);
         }
     }
 
     @Override
-    public void addInternal(Vertex vertex) {
-        throw new UnsupportedOperationException();
+    public void addInternal(final Vertex vertex) {
+        checkIsComposite();
+
+        List<Object> values = getCompositeValues(vertex);
+        if (null != values) {
+            compositeIndex.computeIfAbsent(values, v -> ConcurrentHashMap.newKeySet()).add(vertex);
+        }
     }
 
     @Override
     public void removeInternal(final Vertex vertex) {
-        throw new UnsupportedOperationException();
+        checkIsComposite();
+
+        List<Object> values = getCompositeValues(vertex);
+        if (null != values) {
+            compositeIndex.computeIfPresent(values, (v, vertices) -> {
+                vertices.remove(vertex);
+                return vertices.isEmpty() ? null : vertices;
+            });
+        }
+    }
+
+    @Override
+    protected Iterator<Vertex> getInternal(final Object... values) {
+        if (!isComposite()) {
+            return null;
+        }
+
+        Set<Vertex> vertices = compositeIndex.get(Arrays.asList(values));
+        return null == vertices ? Collections.emptyIterator() : vertices.iterator();
+    }
+
+    private List<Object> getCompositeValues(final Vertex vertex) {
+        List<Object> values = new ArrayList<>(keys.size());
+        int present = 0;
+        for (String k : keys) {
+            Property<Object> property = vertex.property(k);
+            if (property.isPresent()) {
+                values.add(property.value());
+                present++;
+            } else {
+                values.add(null);
+            }
+        }
+
+        return null != values.get(0) && present > 1 ? values : null;
     }
 
     private boolean keyExists(final String key) {
@@ -45,4 +105,10 @@ public class TinkerGraphIndex extends GraphIndex {
         Preconditions.checkNotNull(key);
         Preconditions.checkArgument(key.length() > 0);
     }
+
+    private void checkIsComposite() {
+        if (!isComposite()) {
+            throw new UnsupportedOperationException();
+        }
+    }
 }
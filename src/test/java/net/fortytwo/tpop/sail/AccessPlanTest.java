@@ -0,0 +1,172 @@
+package net.fortytwo.tpop.sail;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.FOAF;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.sail.SailException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AccessPlanTest extends GraphSailTestBase {
+    private static final String EX = "http://example.org/";
+
+    private ValueFactory vf;
+    private IRI hub, rare, graph1;
+    private List<Statement> added;
+
+    @Before
+    public void setUp() {
+        super.setUp();
+        vf = graphSail.getValueFactory();
+        hub = vf.createIRI(EX + "hub");
+        rare = vf.createIRI(EX + "rare");
+        graph1 = vf.createIRI(EX + "graph1");
+        added = new LinkedList<>();
+
+        // the hub has many out-edges, only two of which lead to the rare object
+        for (int i = 0; i < 1000; i++) {
+            added.add(vf.createStatement(hub, FOAF.KNOWS, vf.createIRI(EX + "person" + i)));
+        }
+        added.add(vf.createStatement(hub, FOAF.KNOWS, rare, graph1));
+        added.add(vf.createStatement(hub, RDF.TYPE, rare));
+        added.add(vf.createStatement(rare, RDF.TYPE, FOAF.PERSON, graph1));
+
+        createConnection();
+        connection.begin();
+        for (Statement st : added) {
+            connection.addStatement(st.getSubject(), st.getPredicate(), st.getObject(), st.getContext());
+        }
+        connection.commit();
+    }
+
+    @Test
+    public void theSmallerSideOfABoundPatternIsScanned() {
+        AccessPlan plan = graphSail.explain(hub, FOAF.KNOWS, rare);
+        assertEquals(AccessPlan.Path.ObjectEdges, plan.getPath());
+        assertTrue(plan.isPredicatePushedDown());
+        assertEquals(Collections.singletonList(AccessPlan.Position.Subject), plan.getFilters());
+        assertTrue(plan.getEstimatedCost() <= 2);
+
+        plan = graphSail.explain(hub, RDF.TYPE, null);
+        assertEquals(AccessPlan.Path.SubjectEdges, plan.getPath());
+        assertTrue(plan.isPredicatePushedDown());
+        assertTrue(plan.getFilters().isEmpty());
+
+        plan = graphSail.explain(null, FOAF.KNOWS, null, graph1);
+        assertEquals(AccessPlan.Path.ContextIndex, plan.getPath());
+        assertEquals(Collections.singletonList(AccessPlan.Position.Predicate), plan.getFilters());
+
+        plan = graphSail.explain(null, null, null);
+        assertEquals(AccessPlan.Path.FullScan, plan.getPath());
+        assertEquals(added.size(), plan.getEstimatedCost());
+        connection.close();
+    }
+
+    @Test
+    public void fullyBoundPatternsUseTheStatementIndex() {
+        AccessPlan plan = graphSail.explain(hub, FOAF.KNOWS, rare, graph1, null);
+        assertEquals(AccessPlan.Path.StatementIndex, plan.getPath());
+        assertEquals(2, plan.getEstimatedCost());
+        assertTrue(plan.getFilters().isEmpty());
+
+        // re-adding existing statements to a hub is a no-op under the unique statements policy
+        graphSail.enforceUniqueStatements(true);
+        connection.begin();
+        for (Statement st : added) {
+            connection.addStatement(st.getSubject(), st.getPredicate(), st.getObject(), st.getContext());
+        }
+        connection.addStatement(hub, FOAF.KNOWS, rare);
+        connection.commit();
+
+        connection.begin();
+        assertEquals(added.size() + 1, countStatements());
+        assertEquals(1, countIterator(connection.getStatements(hub, FOAF.KNOWS, rare, false, graph1)));
+        assertEquals(2, countIterator(connection.getStatements(hub, FOAF.KNOWS, rare, false, graph1, null)));
+        connection.removeStatements(hub, FOAF.KNOWS, rare, graph1);
+        connection.commit();
+
+        connection.begin();
+        assertFalse(connection.hasStatement(hub, FOAF.KNOWS, rare, false, graph1));
+        assertTrue(connection.hasStatement(hub, FOAF.KNOWS, rare, false, (Resource) null));
+        connection.commit();
+        connection.close();
+    }
+
+    @Test
+    public void missingValuesYieldAnEmptyPlan() {
+        AccessPlan plan = graphSail.explain(hub, FOAF.KNOWS, vf.createIRI(EX + "nobody"));
+        assertEquals(AccessPlan.Path.Empty, plan.getPath());
+        assertEquals(0, plan.getEstimatedCost());
+
+        connection.begin();
+        assertFalse(connection.hasStatement(hub, FOAF.KNOWS, vf.createIRI(EX + "nobody"), false));
+        connection.commit();
+        connection.close();
+    }
+
+    @Test
+    public void everyPatternYieldsTheMatchingStatements() {
+        List<Resource> subjects = Arrays.asList(null, hub, rare);
+        List<IRI> predicates = Arrays.asList(null, FOAF.KNOWS, RDF.TYPE);
+        List<Value> objects = Arrays.asList(null, rare, FOAF.PERSON, vf.createIRI(EX + "person7"));
+        List<Resource[]> contextLists = Arrays.asList(
+                new Resource[]{}, new Resource[]{graph1}, new Resource[]{null}, new Resource[]{null, graph1});
+
+        connection.begin();
+        for (Resource subject : subjects) {
+            for (IRI predicate : predicates) {
+                for (Value object : objects) {
+                    for (Resource[] contexts : contextLists) {
+                        assertEquals(expected(subject, predicate, object, contexts),
+                                actual(subject, predicate, object, contexts));
+                    }
+                }
+            }
+        }
+        connection.commit();
+        connection.close();
+    }
+
+    private Set<Statement> expected(final Resource subject, final IRI predicate, final Value object,
+                                    final Resource... contexts) {
+        Set<Resource> contextSet = new HashSet<>(Arrays.asList(contexts));
+        Set<Statement> results = new HashSet<>();
+        for (Statement st : added) {
+            if ((null == subject || subject.equals(st.getSubject()))
+                    && (null == predicate || predicate.equals(st.getPredicate()))
+                    && (null == object || object.equals(st.getObject()))
+                    && (contextSet.isEmpty() || contextSet.contains(st.getContext()))) {
+                results.add(st);
+            }
+        }
+        return results;
+    }
+
+    private Set<Statement> actual(final Resource subject, final IRI predicate, final Value object,
+                                  final Resource... contexts) {
+        Set<Statement> results = new HashSet<>();
+        try (CloseableIteration<? extends Statement, SailException> iter
+                     = connection.getStatements(subject, predicate, object, false, contexts)) {
+            while (iter.hasNext()) {
+                results.add(iter.next());
+            }
+        }
+        return results;
+    }
+}
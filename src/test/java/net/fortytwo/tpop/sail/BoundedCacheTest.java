@@ -0,0 +1,200 @@
+package net.fortytwo.tpop.sail;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.sail.SailException;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BoundedCacheTest extends GraphSailTestBase {
+
+    @Test
+    public void sizeNeverExceedsCapacity() {
+        BoundedCache<Integer, String> cache = new BoundedCache<>(100);
+        for (int i = 0; i < 10000; i++) {
+            cache.put(i, "" + i);
+            assertTrue(cache.size() <= 100);
+        }
+    }
+
+    @Test
+    public void frequentlyRequestedKeysSurviveAScan() {
+        BoundedCache<Integer, String> cache = new BoundedCache<>(100);
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, "hot" + i);
+        }
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 10; i++) {
+                assertNotNull(cache.get(i));
+            }
+        }
+
+        // a long stream of one-off keys, with the hot keys requested now and then.
+        // An LRU cache of the same capacity would have evicted the hot keys between requests.
+        for (int i = 1000; i < 11000; i++) {
+            cache.get(i);
+            cache.put(i, "cold" + i);
+            if (0 == i % 500) {
+                for (int j = 0; j < 10; j++) {
+                    cache.get(j);
+                }
+            }
+        }
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("hot" + i, cache.get(i));
+        }
+    }
+
+    @Test
+    public void invalidatedKeysAreGone() {
+        BoundedCache<String, String> cache = new BoundedCache<>(10);
+        cache.put("a", "1");
+        assertEquals("1", cache.get("a"));
+        cache.invalidate("a");
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void zeroCapacityDisablesCaching() {
+        BoundedCache<String, String> cache = new BoundedCache<>(0);
+        cache.put("a", "1");
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getStatistics().getHits());
+        assertEquals(1, cache.getStatistics().getMisses());
+    }
+
+    @Test
+    public void vertexLookupsAreCachedAndInvalidated() {
+        createConnection();
+        ValueFactory vf = graphSail.getValueFactory();
+        IRI a = vf.createIRI("http://example.org/a");
+        IRI b = vf.createIRI("http://example.org/b");
+
+        connection.begin();
+        connection.addStatement(a, RDF.TYPE, b);
+        connection.addStatement(b, RDF.TYPE, a);
+        connection.commit();
+
+        long hitsBefore = graphSail.getVertexCacheStatistics().getHits();
+        connection.begin();
+        assertEquals(1, countIterator(connection.getStatements(a, null, null, false)));
+        assertEquals(1, countIterator(connection.getStatements(null, null, b, false)));
+        connection.commit();
+        assertTrue(graphSail.getVertexCacheStatistics().getHits() >= hitsBefore + 2);
+
+        // removing the last statements of a value deletes its vertex, which must not linger in the cache
+        connection.begin();
+        connection.removeStatements(null, null, null);
+        connection.commit();
+        connection.begin();
+        assertEquals(0, countIterator(connection.getStatements(a, null, null, false)));
+        connection.addStatement(a, RDF.TYPE, b);
+        connection.commit();
+        connection.begin();
+        assertEquals(1, countIterator(connection.getStatements(a, null, null, false)));
+        connection.commit();
+        connection.close();
+    }
+
+    @Test
+    public void materializedValuesAreCachedAndInvalidated() {
+        createConnection();
+        ValueFactory vf = graphSail.getValueFactory();
+        IRI type = vf.createIRI("http://example.org/Type");
+        Literal label = vf.createLiteral("label", "en");
+
+        connection.begin();
+        for (int i = 0; i < 10; i++) {
+            IRI instance = vf.createIRI("http://example.org/instance" + i);
+            connection.addStatement(instance, RDF.TYPE, type);
+            connection.addStatement(instance, RDFS.LABEL, label);
+        }
+        connection.commit();
+
+        // a hub vertex is materialized once, and the same value is shared among all statements
+        long hitsBefore = graphSail.getValueCacheStatistics().getHits();
+        connection.begin();
+        Set<Value> objects = Collections.newSetFromMap(new IdentityHashMap<>());
+        try (CloseableIteration<? extends Statement, SailException> iter
+                     = connection.getStatements(null, RDF.TYPE, type, false)) {
+            while (iter.hasNext()) {
+                objects.add(iter.next().getObject());
+            }
+        }
+        connection.commit();
+        assertEquals(1, objects.size());
+        assertTrue(graphSail.getValueCacheStatistics().getHits() >= hitsBefore + 9);
+
+        // a deleted vertex must not leave its value behind
+        connection.begin();
+        connection.removeStatements(null, RDFS.LABEL, null);
+        connection.addStatement(type, RDFS.LABEL, vf.createLiteral("other"));
+        connection.commit();
+        connection.begin();
+        assertEquals(0, countIterator(connection.getStatements(null, null, label, false)));
+        try (CloseableIteration<? extends Statement, SailException> iter
+                     = connection.getStatements(null, RDFS.LABEL, null, false)) {
+            assertEquals(vf.createLiteral("other"), iter.next().getObject());
+            assertFalse(iter.hasNext());
+        }
+        connection.commit();
+        connection.close();
+    }
+
+    @Test
+    public void removingAStatementWhoseSubjectIsItsObjectDeletesItsVertexOnce() {
+        createConnection();
+        IRI a = graphSail.getValueFactory().createIRI("http://example.org/a");
+
+        connection.begin();
+        connection.addStatement(a, RDF.TYPE, a);
+        connection.commit();
+        connection.begin();
+        connection.removeStatements(a, RDF.TYPE, a);
+        connection.commit();
+
+        connection.begin();
+        assertEquals(0, countStatements());
+        connection.commit();
+        connection.close();
+    }
+
+    @Test
+    public void deletedBlankNodeVerticesDoNotLingerInTheCache() {
+        createConnection();
+        BNode node = graphSail.getValueFactory().createBNode("b1");
+
+        connection.begin();
+        connection.addStatement(node, RDF.TYPE, RDF.PROPERTY);
+        connection.commit();
+        connection.begin();
+        connection.removeStatements(node, null, null);
+        connection.commit();
+
+        connection.begin();
+        connection.addStatement(node, RDF.TYPE, RDF.STATEMENT);
+        connection.commit();
+        connection.begin();
+        assertEquals(1, countIterator(connection.getStatements(node, null, null, false)));
+        connection.commit();
+        connection.close();
+    }
+}
@@ -0,0 +1,146 @@
+package net.fortytwo.tpop.sail;
+
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.FOAF;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.sail.SailException;
+import org.junit.Test;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BulkLoadTest extends GraphSailTestBase {
+    private static final String EX = "http://example.org/";
+
+    private final List<Vertex> indexedVertices = new LinkedList<>();
+
+    @Override
+    protected GraphSail createSail() {
+        TinkerGraph graph = TinkerGraph.open();
+        return new GraphSail(graph, key -> new RecordingIndex(key));
+    }
+
+    @Test
+    public void bulkLoadedStatementsAreVisibleAndReported() {
+        ValueFactory vf = graphSail.getValueFactory();
+        createConnection();
+
+        graphSail.beginBulkLoad();
+        connection.begin();
+        for (int i = 0; i < 1000; i++) {
+            IRI person = vf.createIRI(EX + "person" + i);
+            connection.addStatement(person, RDF.TYPE, FOAF.PERSON);
+            connection.addStatement(person, FOAF.NAME, vf.createLiteral("person " + i));
+        }
+        connection.commit();
+
+        // vertex index maintenance is deferred to the end of the load
+        assertEquals(0, indexedVertices.size());
+        connection.begin();
+        assertEquals(1000, countIterator(connection.getStatements(null, RDF.TYPE, FOAF.PERSON, false)));
+        connection.commit();
+
+        BulkLoadReport report = graphSail.endBulkLoad();
+        assertEquals(2000, report.getStatementsAdded());
+        assertEquals(0, report.getDuplicatesRemoved());
+        assertEquals(2001, report.getVerticesCreated());
+        assertEquals(2001, indexedVertices.size());
+        assertTrue(report.getStatementsPerSecond() > 0);
+
+        connection.begin();
+        assertEquals(2000, countStatements());
+        connection.commit();
+        connection.close();
+    }
+
+    @Test
+    public void duplicatesAreRemovedAtTheEndOfTheLoad() {
+        ValueFactory vf = graphSail.getValueFactory();
+        IRI alice = vf.createIRI(EX + "alice");
+        IRI bob = vf.createIRI(EX + "bob");
+        IRI graph1 = vf.createIRI(EX + "graph1");
+        graphSail.enforceUniqueStatements(true);
+        createConnection();
+
+        connection.begin();
+        connection.addStatement(alice, FOAF.KNOWS, bob);
+        connection.commit();
+
+        graphSail.beginBulkLoad();
+        connection.begin();
+        for (int i = 0; i < 3; i++) {
+            connection.addStatement(alice, FOAF.KNOWS, bob);
+            connection.addStatement(alice, FOAF.KNOWS, bob, graph1);
+            connection.addStatement(bob, FOAF.KNOWS, alice);
+        }
+        connection.commit();
+        BulkLoadReport report = graphSail.endBulkLoad();
+
+        assertEquals(9, report.getStatementsAdded());
+        assertEquals(7, report.getDuplicatesRemoved());
+        connection.begin();
+        assertEquals(3, countStatements());
+        assertEquals(1, countIterator(connection.getStatements(alice, FOAF.KNOWS, bob, false, graph1)));
+        connection.commit();
+        connection.close();
+    }
+
+    @Test(expected = SailException.class)
+    public void bulkLoadsCannotBeNested() {
+        graphSail.beginBulkLoad();
+        graphSail.beginBulkLoad();
+    }
+
+    @Test(expected = SailException.class)
+    public void endingWithoutABulkLoadFails() {
+        graphSail.endBulkLoad();
+    }
+
+    @Test
+    public void theUniqueStatementsPolicyCannotChangeDuringALoad() {
+        graphSail.beginBulkLoad();
+        // setting the current policy is harmless
+        graphSail.enforceUniqueStatements(false);
+        try {
+            graphSail.enforceUniqueStatements(true);
+            fail("expected the policy change to be rejected");
+        } catch (SailException e) {
+            // expected
+        }
+        graphSail.endBulkLoad();
+        graphSail.enforceUniqueStatements(true);
+    }
+
+    // a manually maintained index which merely records its additions
+    private class RecordingIndex extends GraphIndex {
+        private RecordingIndex(final String key) {
+            super(key);
+        }
+
+        @Override
+        protected boolean isAutomatic() {
+            return false;
+        }
+
+        @Override
+        public void initialize() {
+        }
+
+        @Override
+        protected void addInternal(final Vertex vertex) {
+            indexedVertices.add(vertex);
+        }
+
+        @Override
+        public void removeInternal(final Vertex vertex) {
+            indexedVertices.remove(vertex);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package net.fortytwo.tpop.sail;
+
+import com.google.common.collect.Iterators;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.FOAF;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
+import org.eclipse.rdf4j.query.parser.ParsedQuery;
+import org.eclipse.rdf4j.query.parser.sparql.SPARQLParser;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.eclipse.rdf4j.sail.SailException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrencyTest extends GraphSailTestBase {
+    private static final String EX = "http://example.org/";
+    private static final int PEOPLE = 100;
+
+    @Test
+    public void concurrentWritersCreateOneVertexPerValue() throws Exception {
+        ValueFactory vf = graphSail.getValueFactory();
+        int writers = 8;
+        int statementsPerWriter = 500;
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            tasks.add(() -> {
+                try (SailConnection sc = graphSail.getConnection()) {
+                    for (int i = 0; i < statementsPerWriter; i++) {
+                        // every writer adds statements about the same values
+                        sc.begin();
+                        sc.addStatement(vf.createIRI(EX + "person" + (i % 50)), FOAF.KNOWS,
+                                vf.createIRI(EX + "person" + (i % 7)));
+                        sc.addStatement(vf.createIRI(EX + "person" + (i % 50)), FOAF.AGE, vf.createLiteral(i % 20));
+                        sc.commit();
+                    }
+                }
+                return null;
+            });
+        }
+        runAll(tasks);
+
+        // 50 people, including the 7 known people, and 20 ages
+        assertEquals(70, Iterators.size(graphSail.getDataStore().getGraph().vertices()));
+        createConnection();
+        connection.begin();
+        assertEquals(2 * writers * statementsPerWriter, countStatements());
+        connection.commit();
+        connection.close();
+    }
+
+    @Test
+    public void concurrentAdditionsAndRemovalsOfTheSameValuesLeaveNoDuplicateVertices() throws Exception {
+        ValueFactory vf = graphSail.getValueFactory();
+        int writers = 8;
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            tasks.add(() -> {
+                try (SailConnection sc = graphSail.getConnection()) {
+                    for (int i = 0; i < 500; i++) {
+                        // vertices are repeatedly created, left isolated and deleted, by all writers at once
+                        IRI subject = vf.createIRI(EX + "hub" + (i % 5));
+                        IRI object = vf.createIRI(EX + "leaf" + ((i + writer) % 10));
+                        sc.begin();
+                        sc.addStatement(subject, FOAF.KNOWS, object);
+                        sc.commit();
+                        sc.begin();
+                        sc.removeStatements(subject, FOAF.KNOWS, object);
+                        sc.commit();
+                    }
+                    sc.begin();
+                    sc.addStatement(vf.createIRI(EX + "hub" + writer), FOAF.MADE, vf.createIRI(EX + "leaf0"));
+                    sc.commit();
+                }
+                return null;
+            });
+        }
+        runAll(tasks);
+
+        Set<Object> values = new HashSet<>();
+        graphSail.getDataStore().getGraph().vertices().forEachRemaining(vertex ->
+                assertTrue(values.add(vertex.value(Schema.VertexProperties.VALUE))));
+        // each writer's last statement is all that remains
+        assertEquals(writers + 1, values.size());
+        createConnection();
+        connection.begin();
+        assertEquals(writers, countStatements());
+        assertEquals(writers, countIterator(connection.getStatements(
+                null, FOAF.MADE, vf.createIRI(EX + "leaf0"), false)));
+        connection.commit();
+        connection.close();
+    }
+
+    @Test
+    public void readersAreUnaffectedByAConcurrentWriter() throws Exception {
+        ValueFactory vf = graphSail.getValueFactory();
+        createConnection();
+        connection.begin();
+        for (int i = 0; i < PEOPLE; i++) {
+            IRI person = vf.createIRI(EX + "person" + i);
+            connection.addStatement(person, RDF.TYPE, FOAF.PERSON);
+            connection.addStatement(person, FOAF.NAME, vf.createLiteral("person " + i));
+        }
+        connection.commit();
+        connection.close();
+
+        ParsedQuery query = new SPARQLParser().parseQuery(
+                "SELECT ?p ?n WHERE { ?p a <" + FOAF.PERSON + "> ; <" + FOAF.NAME + "> ?n }", EX);
+        AtomicBoolean done = new AtomicBoolean();
+        List<Callable<Void>> tasks = new ArrayList<>();
+
+        // the writer repeatedly adds and removes statements which link the people to new values,
+        // creating and deleting vertices and edges around those which the readers traverse
+        tasks.add(() -> {
+            try (SailConnection sc = graphSail.getConnection()) {
+                for (int round = 0; round < 20; round++) {
+                    sc.begin();
+                    for (int i = 0; i < PEOPLE; i++) {
+                        IRI person = vf.createIRI(EX + "person" + i);
+                        sc.addStatement(person, FOAF.KNOWS, vf.createIRI(EX + "friend" + round + "_" + i));
+                        sc.addStatement(person, FOAF.NICK, vf.createLiteral("nick " + round));
+                    }
+                    sc.commit();
+                    sc.begin();
+                    sc.removeStatements(null, FOAF.KNOWS, null);
+                    sc.removeStatements(null, FOAF.NICK, null);
+                    sc.commit();
+                }
+            } finally {
+                done.set(true);
+            }
+            return null;
+        });
+
+        for (int r = 0; r < 4; r++) {
+            tasks.add(() -> {
+                int queries = 0;
+                try (SailConnection sc = graphSail.getConnection()) {
+                    while (!done.get() || queries < 10) {
+                        sc.begin();
+                        // the people and their names are never written, so each reader sees all of them
+                        try (CloseableIteration<? extends BindingSet, QueryEvaluationException> solutions
+                                     = sc.evaluate(query.getTupleExpr(), query.getDataset(),
+                                EmptyBindingSet.getInstance(), false)) {
+                            int count = 0;
+                            while (solutions.hasNext()) {
+                                assertTrue(solutions.next().getValue("n").stringValue().startsWith("person "));
+                                count++;
+                            }
+                            assertEquals(PEOPLE, count);
+                        }
+                        assertEquals(PEOPLE, countIterator(sc.getStatements(null, RDF.TYPE, FOAF.PERSON, false)));
+                        sc.commit();
+                        queries++;
+                    }
+                }
+                return null;
+            });
+        }
+        runAll(tasks);
+
+        createConnection();
+        connection.begin();
+        assertEquals(2 * PEOPLE, countStatements());
+        connection.commit();
+        connection.close();
+        // the vertices of removed values have been deleted, leaving the people, their names and foaf:Person
+        assertEquals(2 * PEOPLE + 1, Iterators.size(graphSail.getDataStore().getGraph().vertices()));
+    }
+
+    // runs the tasks in parallel, failing with the first exception thrown by any of them
+    @Test
+    public void statementsRemovedDuringAScanAreYieldedAsTheyWere() throws Exception {
+        ValueFactory vf = graphSail.getValueFactory();
+        IRI g1 = vf.createIRI(EX + "g1");
+        Set<Statement> added = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            added.add(vf.createStatement(vf.createIRI(EX + "a" + i), FOAF.KNOWS, vf.createIRI(EX + "b" + i), g1));
+        }
+        added.add(vf.createStatement(vf.createIRI(EX + "a5"), FOAF.KNOWS, vf.createIRI(EX + "b5")));
+
+        createConnection();
+        connection.begin();
+        for (Statement st : added) {
+            connection.addStatement(st.getSubject(), st.getPredicate(), st.getObject(), st.getContext());
+        }
+        connection.commit();
+
+        connection.begin();
+        try (CloseableIteration<? extends Statement, SailException> statements
+                     = connection.getStatements(null, FOAF.KNOWS, null, false)) {
+            // the first statement is read before, and the others after, a writer removes the named graph
+            assertTrue(added.contains(statements.next()));
+            try (SailConnection writer = graphSail.getConnection()) {
+                writer.begin();
+                writer.clear(g1);
+                writer.commit();
+            }
+            while (statements.hasNext()) {
+                Statement st = statements.next();
+                assertTrue(st.toString(), added.contains(st));
+            }
+        }
+        connection.commit();
+        connection.close();
+    }
+
+    private void runAll(final List<Callable<Void>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<Void> future : futures) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
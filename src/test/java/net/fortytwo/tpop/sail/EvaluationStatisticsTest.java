@@ -0,0 +1,101 @@
+package net.fortytwo.tpop.sail;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.FOAF;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.EvaluationStatistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EvaluationStatisticsTest extends GraphSailTestBase {
+    private static final String EX = "http://example.org/";
+
+    private ValueFactory vf;
+    private EvaluationStatistics statistics;
+    private IRI hub, graph1;
+
+    @Before
+    public void setUp() {
+        super.setUp();
+        vf = graphSail.getValueFactory();
+        statistics = graphSail.getSailStore().getEvaluationStatistics();
+        hub = vf.createIRI(EX + "hub");
+        graph1 = vf.createIRI(EX + "graph1");
+
+        createConnection();
+        connection.begin();
+        for (int i = 0; i < 100; i++) {
+            IRI person = vf.createIRI(EX + "person" + i);
+            connection.addStatement(person, RDF.TYPE, FOAF.PERSON);
+            connection.addStatement(person, FOAF.KNOWS, hub);
+            connection.addStatement(person, FOAF.NAME, vf.createLiteral("person " + i), graph1);
+        }
+        connection.addStatement(hub, FOAF.MBOX, vf.createIRI("mailto:hub@example.org"));
+        connection.commit();
+    }
+
+    @After
+    public void tearDown() {
+        connection.close();
+        super.tearDown();
+    }
+
+    @Test
+    public void unboundPatternMatchesEverything() {
+        assertEquals(301.0, cardinality(null, null, null), 0.0);
+    }
+
+    @Test
+    public void predicateCardinalityIsExact() {
+        assertEquals(100.0, cardinality(null, FOAF.KNOWS, null), 0.0);
+        assertEquals(1.0, cardinality(null, FOAF.MBOX, null), 0.0);
+        assertEquals(0.0, cardinality(null, FOAF.HOMEPAGE, null), 0.0);
+    }
+
+    @Test
+    public void boundSubjectsAndObjectsUseVertexDegree() {
+        assertEquals(100.0, cardinality(null, null, hub), 0.0);
+        assertEquals(1.0, cardinality(hub, null, null), 0.0);
+        assertEquals(3.0, cardinality(vf.createIRI(EX + "person7"), null, null), 0.0);
+        assertEquals(0.0, cardinality(vf.createIRI(EX + "nobody"), null, null), 0.0);
+
+        // each person has exactly one name, as the distinct-subject sketch reflects
+        double nameOfPerson = cardinality(vf.createIRI(EX + "person7"), FOAF.NAME, null);
+        assertTrue(nameOfPerson > 0.5 && nameOfPerson < 1.5);
+    }
+
+    @Test
+    public void contextCardinalityIsExact() {
+        StatementPattern sp = new StatementPattern(new Var("s"), new Var("p"), new Var("o"),
+                new Var("c", graph1));
+        assertEquals(100.0, statistics.getCardinality(sp), 0.0);
+
+        StatementPattern named = new StatementPattern(StatementPattern.Scope.NAMED_CONTEXTS,
+                new Var("s"), new Var("p"), new Var("o"), new Var("c"));
+        assertEquals(100.0, statistics.getCardinality(named), 0.0);
+    }
+
+    @Test
+    public void countersFollowRemovals() {
+        connection.begin();
+        connection.removeStatements(null, FOAF.KNOWS, null);
+        connection.commit();
+
+        assertEquals(0.0, cardinality(null, FOAF.KNOWS, null), 0.0);
+        assertEquals(0.0, cardinality(null, null, hub), 0.0);
+        assertEquals(201.0, cardinality(null, null, null), 0.0);
+    }
+
+    private double cardinality(final Value subject, final Value predicate, final Value object) {
+        return statistics.getCardinality(new StatementPattern(
+                new Var("s", subject), new Var("p", predicate), new Var("o", object)));
+    }
+}
@@ -17,6 +17,23 @@ public class GetAndRetrieveStatementsTest extends GraphSailTestBase {
         assertEquals(1, countStatements());
     }
 
+    @Test
+    public void blankNodesAreRetrievedWithTheirOriginalIds() {
+        createConnection();
+        BNode node = graphSail.getValueFactory().createBNode("b1");
+
+        connection.begin();
+        connection.addStatement(node, RDF.TYPE, RDF.TYPE);
+        connection.addStatement(RDF.TYPE, RDF.TYPE, node);
+        connection.commit();
+
+        connection.begin();
+        assertEquals(node, connection.getStatements(null, RDF.TYPE, RDF.TYPE, false).next().getSubject());
+        assertEquals(node, connection.getStatements(RDF.TYPE, RDF.TYPE, null, false).next().getObject());
+        connection.commit();
+        connection.close();
+    }
+
     @Test
     public void testTmp() {
         for (int i = 0; i < 10; i++) {
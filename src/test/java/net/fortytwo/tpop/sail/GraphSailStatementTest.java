@@ -0,0 +1,109 @@
+package net.fortytwo.tpop.sail;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.FOAF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.sail.SailException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GraphSailStatementTest extends GraphSailTestBase {
+    private static final String EX = "http://example.org/";
+
+    @Test
+    public void lazyStatementsAreEqualToOtherStatements() throws Exception {
+        ValueFactory vf = graphSail.getValueFactory();
+        IRI alice = vf.createIRI(EX + "alice");
+        IRI bob = vf.createIRI(EX + "bob");
+        IRI graph1 = vf.createIRI(EX + "graph1");
+        Statement inContext = vf.createStatement(alice, FOAF.KNOWS, bob, graph1);
+        Statement withoutContext = vf.createStatement(alice, RDFS.LABEL, vf.createLiteral("Alice", "en"));
+
+        createConnection();
+        connection.begin();
+        connection.addStatement(alice, FOAF.KNOWS, bob, graph1);
+        connection.addStatement(alice, RDFS.LABEL, vf.createLiteral("Alice", "en"));
+        connection.commit();
+
+        connection.begin();
+        Statement lazyInContext = getStatements(null, FOAF.KNOWS).get(0);
+        Statement lazyWithoutContext = getStatements(alice, RDFS.LABEL).get(0);
+        connection.commit();
+        connection.close();
+
+        assertTrue(lazyInContext instanceof GraphSailStatement);
+        assertEquals(inContext, lazyInContext);
+        assertEquals(lazyInContext, inContext);
+        assertEquals(inContext.hashCode(), lazyInContext.hashCode());
+        assertEquals(inContext.toString(), lazyInContext.toString());
+        assertEquals(withoutContext, lazyWithoutContext);
+        assertEquals(withoutContext.hashCode(), lazyWithoutContext.hashCode());
+        assertNull(lazyWithoutContext.getContext());
+        assertNotEquals(lazyInContext, lazyWithoutContext);
+
+        Set<Statement> set = new HashSet<>();
+        set.add(inContext);
+        set.add(lazyInContext);
+        assertEquals(1, set.size());
+
+        // serialization yields a detached copy of the statement
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(lazyInContext);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(inContext, in.readObject());
+        }
+    }
+
+    @Test
+    public void statementsKeepTheirContextAfterTheirEdgesAreRemoved() {
+        ValueFactory vf = graphSail.getValueFactory();
+        IRI alice = vf.createIRI(EX + "alice");
+        IRI bob = vf.createIRI(EX + "bob");
+        IRI graph1 = vf.createIRI(EX + "graph1");
+
+        createConnection();
+        connection.begin();
+        connection.addStatement(alice, FOAF.KNOWS, bob, graph1);
+        connection.commit();
+
+        connection.begin();
+        List<Statement> statements = getStatements(null, FOAF.KNOWS);
+        connection.commit();
+        connection.begin();
+        connection.clear(graph1);
+        connection.commit();
+        connection.close();
+
+        assertEquals(vf.createStatement(alice, FOAF.KNOWS, bob, graph1), statements.get(0));
+        assertEquals(graph1, statements.get(0).getContext());
+    }
+
+    private List<Statement> getStatements(final IRI subject, final IRI predicate) {
+        List<Statement> results = new LinkedList<>();
+        try (CloseableIteration<? extends Statement, SailException> iter
+                     = connection.getStatements(subject, predicate, null, false)) {
+            while (iter.hasNext()) {
+                results.add(iter.next());
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,78 @@
+package net.fortytwo.tpop.sail;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.FOAF;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+import org.eclipse.rdf4j.sail.SailException;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class InternPoolTest extends GraphSailTestBase {
+
+    @Test
+    public void equalKeysYieldTheSameInstance() {
+        InternPool<String, IRI> pool = new InternPool<>(10, SimpleValueFactory.getInstance()::createIRI);
+        IRI first = pool.intern(FOAF.KNOWS.stringValue());
+        IRI second = pool.intern(new String(FOAF.KNOWS.stringValue()));
+        assertSame(first, second);
+        assertEquals(FOAF.KNOWS, first);
+    }
+
+    @Test
+    public void sizeNeverExceedsCapacity() {
+        InternPool<String, IRI> pool = new InternPool<>(10, SimpleValueFactory.getInstance()::createIRI);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("http://example.org/" + i, pool.intern("http://example.org/" + i).stringValue());
+            assertTrue(pool.size() <= 10);
+        }
+    }
+
+    @Test
+    public void zeroCapacityDisablesInterning() {
+        InternPool<String, IRI> pool = new InternPool<>(0, SimpleValueFactory.getInstance()::createIRI);
+        assertNotSame(pool.intern(FOAF.KNOWS.stringValue()), pool.intern(FOAF.KNOWS.stringValue()));
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void predicatesDatatypesAndContextsAreShared() {
+        ValueFactory vf = graphSail.getValueFactory();
+        IRI graph1 = vf.createIRI("http://example.org/graph1");
+        createConnection();
+        connection.begin();
+        for (int i = 0; i < 100; i++) {
+            IRI person = vf.createIRI("http://example.org/person" + i);
+            connection.addStatement(person, FOAF.AGE, vf.createLiteral(String.valueOf(i), XMLSchema.INT), graph1);
+        }
+        connection.commit();
+
+        Set<Object> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+        connection.begin();
+        try (CloseableIteration<? extends Statement, SailException> iter
+                     = connection.getStatements(null, FOAF.AGE, null, false)) {
+            while (iter.hasNext()) {
+                Statement st = iter.next();
+                instances.add(st.getPredicate());
+                instances.add(((Literal) st.getObject()).getDatatype());
+                instances.add(st.getContext());
+            }
+        }
+        connection.commit();
+        connection.close();
+
+        assertEquals(3, instances.size());
+    }
+}
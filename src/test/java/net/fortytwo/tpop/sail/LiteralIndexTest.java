@@ -0,0 +1,168 @@
+package net.fortytwo.tpop.sail;
+
+import net.fortytwo.tpop.sail.tg.TinkerGraphIndex;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.eclipse.rdf4j.sail.SailException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LiteralIndexTest extends GraphSailTestBase {
+    private TinkerGraph graph;
+    private ValueFactory vf;
+    private IRI subject;
+    private List<Literal> literals;
+
+    @Override
+    protected GraphSail createSail() {
+        graph = TinkerGraph.open();
+        // disable the vertex cache, so that every lookup goes to the graph
+        return new GraphSail(graph, key -> new TinkerGraphIndex(key, graph), false, 0);
+    }
+
+    @Before
+    public void setUp() {
+        super.setUp();
+        graphSail.enableLiteralIndex();
+        vf = graphSail.getValueFactory();
+        subject = vf.createIRI("http://example.org/thing");
+
+        // literals which share a lexical form, but differ in datatype or language
+        literals = Arrays.asList(
+                vf.createLiteral("42"),
+                vf.createLiteral("42", XMLSchema.INT),
+                vf.createLiteral("42", XMLSchema.INTEGER),
+                vf.createLiteral("42", "en"),
+                vf.createLiteral("42", "de"));
+    }
+
+    @Test
+    public void literalsAreDistinguishedByDatatypeAndLanguage() {
+        createConnection();
+        connection.begin();
+        for (Literal literal : literals) {
+            connection.addStatement(subject, RDFS.LABEL, literal);
+        }
+        // adding an equal literal again reuses the existing vertex
+        connection.addStatement(subject, RDFS.COMMENT, vf.createLiteral("42", XMLSchema.INT));
+        connection.commit();
+
+        assertEquals(literals.size() + 1, graph.traversal().V().count().next().intValue());
+
+        connection.begin();
+        for (Literal literal : literals) {
+            List<Statement> results = toList(literal);
+            assertEquals(literal.equals(literals.get(1)) ? 2 : 1, results.size());
+            for (Statement st : results) {
+                assertEquals(literal, st.getObject());
+            }
+        }
+        assertFalse(connection.hasStatement(null, null, vf.createLiteral("42", XMLSchema.LONG), false));
+        assertFalse(connection.hasStatement(null, null, vf.createLiteral("42", "fr"), false));
+        connection.commit();
+        connection.close();
+    }
+
+    @Test
+    public void removedLiteralsAreRemovedFromTheIndex() {
+        createConnection();
+        connection.begin();
+        for (Literal literal : literals) {
+            connection.addStatement(subject, RDFS.LABEL, literal);
+        }
+        connection.commit();
+
+        connection.begin();
+        connection.removeStatements(subject, RDFS.LABEL, literals.get(3));
+        connection.commit();
+
+        connection.begin();
+        assertFalse(connection.hasStatement(null, null, literals.get(3), false));
+        assertTrue(connection.hasStatement(null, null, literals.get(4), false));
+        connection.commit();
+
+        // a newly added literal gets a new vertex, which must be found again
+        connection.begin();
+        connection.addStatement(subject, RDFS.COMMENT, literals.get(3));
+        connection.commit();
+
+        connection.begin();
+        assertEquals(1, toList(literals.get(3)).size());
+        connection.commit();
+        connection.close();
+    }
+
+    @Test
+    public void preExistingLiteralsAreIndexed() throws Exception {
+        createConnection();
+        connection.begin();
+        for (Literal literal : literals) {
+            connection.addStatement(subject, RDFS.LABEL, literal);
+        }
+        connection.commit();
+        connection.close();
+
+        GraphSail second = new GraphSail(graph, key -> new TinkerGraphIndex(key, graph), false, 0);
+        second.initialize();
+        second.enableLiteralIndex();
+        try (SailConnection sc = second.getConnection()) {
+            sc.begin();
+            for (Literal literal : literals) {
+                assertEquals(1, countIterator(sc.getStatements(null, null, literal, false)));
+            }
+            sc.commit();
+        }
+        second.shutDown();
+
+        GraphIndex index = new TinkerGraphIndex(Schema.CompositeKeys.LITERAL, graph);
+        index.initialize();
+        List<Vertex> hits = new LinkedList<>();
+        index.get("42", RDF.LANGSTRING.stringValue(), "en").forEachRemaining(hits::add);
+        assertEquals(1, hits.size());
+    }
+
+    @Test
+    public void theIndexFactoryIsAskedForACompositeKeyOnlyOnceTheIndexIsEnabled() {
+        TinkerGraph other = TinkerGraph.open();
+        List<String> keys = new LinkedList<>();
+        GraphSail sail = new GraphSail(other, key -> {
+            keys.add(key);
+            return new TinkerGraphIndex(key, other);
+        });
+        sail.initialize();
+        assertEquals(Collections.singletonList(Schema.VertexProperties.VALUE), keys);
+
+        sail.enableLiteralIndex();
+        assertEquals(Arrays.asList(Schema.VertexProperties.VALUE, Schema.CompositeKeys.LITERAL), keys);
+        sail.shutDown();
+    }
+
+    private List<Statement> toList(final Literal object) {
+        List<Statement> results = new LinkedList<>();
+        try (CloseableIteration<? extends Statement, SailException> iter
+                     = connection.getStatements(null, null, object, false)) {
+            while (iter.hasNext()) {
+                results.add(iter.next());
+            }
+        }
+        return results;
+    }
+}
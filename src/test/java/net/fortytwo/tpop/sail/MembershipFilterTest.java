@@ -0,0 +1,119 @@
+package net.fortytwo.tpop.sail;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.FOAF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MembershipFilterTest extends GraphSailTestBase {
+    private static final String EX = "http://example.org/";
+
+    private ValueFactory vf;
+    private IRI alice, bob, graph1;
+
+    @Before
+    public void setUp() {
+        super.setUp();
+        vf = graphSail.getValueFactory();
+        alice = vf.createIRI(EX + "alice");
+        bob = vf.createIRI(EX + "bob");
+        graph1 = vf.createIRI(EX + "graph1");
+    }
+
+    @Test
+    public void countingFilterHasNoFalseNegatives() {
+        CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("key" + i, null);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain("key" + i, null));
+        }
+        int falsePositives = 0;
+        for (int i = 1000; i < 11000; i++) {
+            if (filter.mightContain("key" + i, null)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300);
+
+        for (int i = 0; i < 500; i++) {
+            filter.remove("key" + i, null);
+        }
+        for (int i = 500; i < 1000; i++) {
+            assertTrue(filter.mightContain("key" + i, null));
+        }
+
+        FilterStatistics stats = filter.getStatistics();
+        assertEquals(500, stats.getEntries());
+        assertTrue(stats.getFalsePositiveRate() < 0.01);
+        assertTrue(stats.getMemoryBytes() > 0);
+        // keys which differ only in how they are split into parts are distinct
+        CountingBloomFilter small = new CountingBloomFilter(10, 0.001);
+        small.add("a", "bc");
+        assertTrue(small.mightContain("a", "bc"));
+        assertFalse(small.mightContain("ab", "c"));
+    }
+
+    @Test
+    public void absentValuesAndStatementsAreRuledOut() {
+        Literal name = vf.createLiteral("Alice", "en");
+        createConnection();
+        connection.begin();
+        connection.addStatement(alice, FOAF.KNOWS, bob, graph1);
+        connection.commit();
+
+        assertNull(graphSail.getValueFilterStatistics());
+        // pre-existing values and statements are added to the filters when they are enabled
+        graphSail.enableMembershipFilters(1000, 1000, 0.001);
+        assertEquals(2, graphSail.getValueFilterStatistics().getEntries());
+        assertEquals(2, graphSail.getStatementFilterStatistics().getEntries());
+
+        connection.begin();
+        connection.addStatement(alice, RDFS.LABEL, name);
+        connection.commit();
+
+        connection.begin();
+        assertTrue(connection.hasStatement(alice, FOAF.KNOWS, bob, false));
+        assertTrue(connection.hasStatement(alice, FOAF.KNOWS, bob, false, graph1));
+        assertTrue(connection.hasStatement(alice, RDFS.LABEL, name, false, (Resource) null));
+        assertTrue(connection.hasStatement(null, null, name, false));
+        connection.commit();
+
+        long valueNegatives = graphSail.getValueFilterStatistics().getNegatives();
+        long statementNegatives = graphSail.getStatementFilterStatistics().getNegatives();
+        connection.begin();
+        assertFalse(connection.hasStatement(vf.createIRI(EX + "carol"), null, null, false));
+        assertFalse(connection.hasStatement(null, null, vf.createLiteral("Alice", "de"), false));
+        assertFalse(connection.hasStatement(bob, FOAF.KNOWS, alice, false));
+        assertFalse(connection.hasStatement(alice, FOAF.KNOWS, bob, false, (Resource) null));
+        connection.commit();
+        assertTrue(graphSail.getValueFilterStatistics().getNegatives() >= valueNegatives + 2);
+        assertTrue(graphSail.getStatementFilterStatistics().getNegatives() >= statementNegatives + 1);
+
+        // removed statements and values are removed from the filters
+        connection.begin();
+        connection.removeStatements(alice, RDFS.LABEL, name);
+        connection.commit();
+        assertEquals(2, graphSail.getValueFilterStatistics().getEntries());
+        assertEquals(2, graphSail.getStatementFilterStatistics().getEntries());
+
+        connection.begin();
+        assertFalse(connection.hasStatement(alice, RDFS.LABEL, name, false));
+        connection.addStatement(alice, RDFS.LABEL, name);
+        connection.commit();
+        connection.begin();
+        assertTrue(connection.hasStatement(alice, RDFS.LABEL, name, false));
+        connection.commit();
+        connection.close();
+    }
+}
@@ -0,0 +1,193 @@
+package net.fortytwo.tpop.sail;
+
+import com.google.common.collect.Iterators;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.FOAF;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+import org.eclipse.rdf4j.rio.RDFParseException;
+import org.eclipse.rdf4j.sail.SailException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParallelImporterTest extends GraphSailTestBase {
+    private static final String EX = "http://example.org/";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void triplesAndQuadsAreImported() throws Exception {
+        File file = write("data.nq", false,
+                "# a comment",
+                "<http://example.org/alice> <" + FOAF.KNOWS + "> <http://example.org/bob> .",
+                "",
+                "<http://example.org/alice> <" + FOAF.NAME + "> \"Alice \\\"Al\\\" Smith\"@en .",
+                "<http://example.org/bob> <" + FOAF.AGE + "> \"42\"^^<" + XMLSchema.INTEGER + ">"
+                        + " <http://example.org/g1> .",
+                "_:b1 <" + FOAF.KNOWS + "> <http://example.org/alice> .",
+                "_:b1 <" + FOAF.NAME + "> \"anonymous\" <http://example.org/g1> . # a trailing comment");
+
+        List<ImportReport> progress = new ArrayList<>();
+        ParallelImporter importer = new ParallelImporter(graphSail, 4, 2);
+        importer.setProgressListener(progress::add);
+        ImportReport report = importer.importFiles(file);
+
+        assertEquals(7, report.getLinesRead());
+        assertEquals(5, report.getStatementsAdded());
+        assertTrue(report.isComplete());
+        // one report for each chunk of two lines
+        assertEquals(4, progress.size());
+        assertEquals(5, progress.get(3).getStatementsAdded());
+
+        ValueFactory vf = graphSail.getValueFactory();
+        IRI alice = vf.createIRI(EX + "alice");
+        IRI bob = vf.createIRI(EX + "bob");
+        IRI g1 = vf.createIRI(EX + "g1");
+        createConnection();
+        connection.begin();
+        assertEquals(5, countStatements());
+        assertEquals(1, countIterator(connection.getStatements(alice, FOAF.KNOWS, bob, false, (Resource) null)));
+        assertEquals(1, countIterator(connection.getStatements(
+                alice, FOAF.NAME, vf.createLiteral("Alice \"Al\" Smith", "en"), false)));
+        assertEquals(1, countIterator(connection.getStatements(bob, FOAF.AGE, vf.createLiteral("42", XMLSchema.INTEGER),
+                false, g1)));
+
+        // a blank node is the same node throughout a file, whichever chunks it occurs in
+        Resource anonymous;
+        try (CloseableIteration<? extends Statement, SailException> statements
+                     = connection.getStatements(null, FOAF.NAME, vf.createLiteral("anonymous"), false, g1)) {
+            anonymous = statements.next().getSubject();
+            assertTrue(!statements.hasNext());
+        }
+        assertEquals(1, countIterator(connection.getStatements(anonymous, FOAF.KNOWS, alice, false)));
+        connection.commit();
+        connection.close();
+    }
+
+    @Test
+    public void blankNodeGraphLabelsAreImported() throws Exception {
+        File file = write("bnode-graphs.nq", false,
+                "<http://example.org/a> <" + FOAF.KNOWS + "> <http://example.org/b> _:g1 .",
+                "<http://example.org/b> <" + FOAF.KNOWS + "> <http://example.org/c> _:g1 .",
+                "<http://example.org/c> <" + FOAF.KNOWS + "> <http://example.org/a> _:g2 .");
+        new ParallelImporter(graphSail, 2, 1).importFiles(file);
+
+        createConnection();
+        connection.begin();
+        List<Resource> contexts = new ArrayList<>();
+        try (CloseableIteration<? extends Resource, SailException> ids = connection.getContextIDs()) {
+            while (ids.hasNext()) {
+                contexts.add(ids.next());
+            }
+        }
+        assertEquals(2, contexts.size());
+        for (Resource context : contexts) {
+            assertTrue(context instanceof BNode);
+        }
+        List<Statement> statements = new ArrayList<>();
+        try (CloseableIteration<? extends Statement, SailException> iter
+                     = connection.getStatements(null, null, null, false)) {
+            while (iter.hasNext()) {
+                statements.add(iter.next());
+            }
+        }
+        assertEquals(3, statements.size());
+        // the first two statements share a graph, which can be used to find them again
+        Resource g1 = statements.stream().filter(st -> st.getSubject().stringValue().endsWith("/a"))
+                .findFirst().get().getContext();
+        assertEquals(2, countIterator(connection.getStatements(null, null, null, false, g1)));
+        connection.commit();
+        connection.close();
+    }
+
+    @Test
+    public void overlappingValuesAcrossFilesAndChunksHaveOneVertexEach() throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            int person = i % 500;
+            lines.add("<http://example.org/person" + person + "> <" + FOAF.KNOWS + "> <http://example.org/person"
+                    + (person % 7) + "> <http://example.org/g" + (person % 3) + "> .");
+        }
+        File plain = write("a.nt", false, lines.toArray(new String[0]));
+        File compressed = write("b.nq.gz", true, lines.toArray(new String[0]));
+
+        graphSail.enforceUniqueStatements(true);
+        ImportReport report = new ParallelImporter(graphSail, 4, 100).importFiles(plain, compressed);
+
+        assertEquals(10000, report.getLinesRead());
+        assertEquals(10000, report.getStatementsAdded());
+        // the 500 distinct statements occur ten times each
+        assertEquals(9500, report.getDuplicatesRemoved());
+        // 500 people and 3 contexts, which are not vertices
+        assertEquals(500, Iterators.size(graphSail.getDataStore().getGraph().vertices()));
+        createConnection();
+        connection.begin();
+        assertEquals(500, countStatements());
+        connection.commit();
+        connection.close();
+    }
+
+    @Test
+    public void aMalformedLineStopsTheImport() throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            lines.add("<http://example.org/s" + i + "> <" + FOAF.KNOWS + "> <http://example.org/o" + i + "> .");
+        }
+        lines.set(41, "<http://example.org/s41> <" + FOAF.KNOWS + "> \"unterminated .");
+        File file = write("bad.nt", false, lines.toArray(new String[0]));
+
+        try {
+            new ParallelImporter(graphSail, 2, 10).importFiles(file);
+            fail("expected a parse error");
+        } catch (RDFParseException e) {
+            assertEquals(42, e.getLineNumber());
+        }
+        // no bulk load is left in progress
+        assertTrue(!graphSail.getDataStore().isBulkLoading());
+        // nor any vertex created for a discarded chunk
+        Iterator<Vertex> vertices = graphSail.getDataStore().getGraph().vertices();
+        while (vertices.hasNext()) {
+            assertTrue(vertices.next().edges(Direction.BOTH).hasNext());
+        }
+    }
+
+    private File write(final String name, final boolean compress, final String... lines) throws IOException {
+        File file = folder.newFile(name);
+        OutputStream out = new FileOutputStream(file);
+        if (compress) {
+            out = new GZIPOutputStream(out);
+        }
+        try (Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+            for (String line : Arrays.asList(lines)) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,509 @@
+package net.fortytwo.tpop.sail;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.FOAF;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
+import org.eclipse.rdf4j.query.parser.ParsedQuery;
+import org.eclipse.rdf4j.query.parser.sparql.SPARQLParser;
+import org.eclipse.rdf4j.sail.Sail;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the results of queries against a GraphSail with those of a reference MemoryStore
+ * holding the same statements, for query patterns which GraphSail evaluates specially.
+ */
+public class QueryEvaluationTest extends GraphSailTestBase {
+    private static final String EX = "http://example.org/";
+    private static final String PREFIXES = "PREFIX ex: <" + EX + ">\n"
+            + "PREFIX foaf: <" + FOAF.NAMESPACE + ">\n"
+            + "PREFIX rdfs: <" + RDFS.NAMESPACE + ">\n"
+            + "PREFIX xsd: <" + XMLSchema.NAMESPACE + ">\n";
+
+    private MemoryStore reference;
+
+    @Before
+    public void setUp() {
+        super.setUp();
+        reference = new MemoryStore();
+        reference.initialize();
+
+        ValueFactory vf = graphSail.getValueFactory();
+        IRI graph1 = vf.createIRI(EX + "graph1");
+        IRI graph2 = vf.createIRI(EX + "graph2");
+        List<Statement> statements = new LinkedList<>();
+        for (int i = 0; i < 20; i++) {
+            IRI person = vf.createIRI(EX + "person" + i);
+            statements.add(vf.createStatement(person, RDF.TYPE, FOAF.PERSON));
+            statements.add(vf.createStatement(person, FOAF.NAME, vf.createLiteral("person " + i), graph1));
+            statements.add(vf.createStatement(person, FOAF.AGE, vf.createLiteral(20 + i % 7)));
+            statements.add(vf.createStatement(person, FOAF.KNOWS, vf.createIRI(EX + "person" + (i + 1) % 20)));
+            if (0 == i % 3) {
+                statements.add(vf.createStatement(person, FOAF.KNOWS, vf.createIRI(EX + "person" + (i + 5) % 20),
+                        graph2));
+            }
+        }
+        statements.add(vf.createStatement(vf.createIRI(EX + "person0"), FOAF.KNOWS, vf.createIRI(EX + "person0")));
+        statements.add(vf.createStatement(FOAF.PERSON, RDFS.LABEL, vf.createLiteral("Person", "en"), graph2));
+        // a class hierarchy with a cycle
+        statements.add(vf.createStatement(FOAF.PERSON, RDFS.SUBCLASSOF, vf.createIRI(EX + "Class0")));
+        for (int i = 0; i < 6; i++) {
+            statements.add(vf.createStatement(
+                    vf.createIRI(EX + "Class" + i), RDFS.SUBCLASSOF, vf.createIRI(EX + "Class" + (i + 1))));
+        }
+        statements.add(vf.createStatement(vf.createIRI(EX + "Class6"), RDFS.SUBCLASSOF, vf.createIRI(EX + "Class3")));
+
+        addStatements(statements);
+    }
+
+    @After
+    public void tearDown() {
+        reference.shutDown();
+        super.tearDown();
+    }
+
+    @Test
+    public void countsOfSingleStatementPatterns() {
+        String[] queries = {
+                "SELECT (COUNT(*) AS ?c) WHERE { ?s ?p ?o }",
+                "SELECT (COUNT(*) AS ?c) WHERE { ?s foaf:knows ?o }",
+                "SELECT (COUNT(*) AS ?c) WHERE { ex:person0 ?p ?o }",
+                "SELECT (COUNT(*) AS ?c) WHERE { ex:person0 foaf:knows ?o }",
+                "SELECT (COUNT(*) AS ?c) WHERE { ?s ?p ex:person1 }",
+                "SELECT (COUNT(*) AS ?c) WHERE { ?s foaf:age 21 }",
+                "SELECT (COUNT(*) AS ?c) WHERE { ?s ?p \"nobody\" }",
+                "SELECT (COUNT(*) AS ?c) WHERE { GRAPH ?g { ?s ?p ?o } }",
+                "SELECT (COUNT(*) AS ?c) WHERE { GRAPH ex:graph1 { ?s ?p ?o } }",
+                "SELECT (COUNT(*) AS ?c) WHERE { GRAPH ?g { ?s foaf:knows ?o } }",
+                // patterns which are evaluated as usual
+                "SELECT (COUNT(*) AS ?c) WHERE { ?s foaf:knows ?s }",
+                "SELECT (COUNT(DISTINCT ?s) AS ?c) WHERE { ?s foaf:knows ?o }",
+                "SELECT (COUNT(*) AS ?c) FROM ex:graph1 WHERE { ?s ?p ?o }",
+                "SELECT ?s (COUNT(*) AS ?c) WHERE { ?s foaf:knows ?o } GROUP BY ?s"};
+        for (String query : queries) {
+            assertSameResults(query);
+        }
+
+        // the counts are obtained without materializing any statements
+        CacheStatistics before = graphSail.getValueCacheStatistics();
+        assertEquals(1, evaluate(graphSail, "SELECT (COUNT(*) AS ?c) WHERE { ?s foaf:knows ?o }").size());
+        CacheStatistics after = graphSail.getValueCacheStatistics();
+        assertEquals(before.getHits() + before.getMisses(), after.getHits() + after.getMisses());
+    }
+
+    @Test
+    public void groupedCountsOfSingleStatementPatterns() {
+        String[] queries = {
+                "SELECT ?p (COUNT(*) AS ?n) WHERE { ?s ?p ?o } GROUP BY ?p",
+                "SELECT ?type (COUNT(*) AS ?n) WHERE { ?s a ?type } GROUP BY ?type",
+                "SELECT ?type (COUNT(?s) AS ?n) WHERE { ?s a ?type } GROUP BY ?type",
+                "SELECT ?s (COUNT(*) AS ?n) (COUNT(?o) AS ?m) WHERE { ?s foaf:knows ?o } GROUP BY ?s",
+                "SELECT ?o (COUNT(*) AS ?n) WHERE { ex:person0 ?p ?o } GROUP BY ?o",
+                "SELECT ?p (COUNT(*) AS ?n) WHERE { ?s ?p ex:nobody } GROUP BY ?p",
+                "SELECT ?g (COUNT(*) AS ?n) WHERE { GRAPH ?g { ?s ?p ?o } } GROUP BY ?g",
+                "SELECT ?p (COUNT(*) AS ?n) WHERE { GRAPH ?g { ?s ?p ?o } } GROUP BY ?p",
+                "SELECT ?p (COUNT(*) AS ?n) WHERE { GRAPH ex:graph2 { ?s ?p ?o } } GROUP BY ?p",
+                "SELECT ?p (COUNT(*) AS ?n) WHERE { ?s ?p ?o } GROUP BY ?p HAVING (COUNT(*) > 20)",
+                // patterns which are evaluated as usual
+                "SELECT ?p (COUNT(DISTINCT ?s) AS ?n) WHERE { ?s ?p ?o } GROUP BY ?p",
+                "SELECT ?p (COUNT(*) AS ?n) WHERE { ?s ?p ?s } GROUP BY ?p",
+                "SELECT ?p (COUNT(?x) AS ?n) WHERE { ?s ?p ?o } GROUP BY ?p",
+                "SELECT ?p ?s (COUNT(*) AS ?n) WHERE { ?s ?p ?o } GROUP BY ?p ?s",
+                "SELECT ?p (COUNT(*) AS ?n) FROM ex:graph1 WHERE { ?s ?p ?o } GROUP BY ?p"};
+        for (String query : queries) {
+            assertSameResults(query);
+        }
+
+        // values are created only for the groups
+        String query = "SELECT ?type (COUNT(*) AS ?n) WHERE { ?s a ?type } GROUP BY ?type";
+        CacheStatistics before = graphSail.getValueCacheStatistics();
+        int results = evaluate(graphSail, query).size();
+        CacheStatistics after = graphSail.getValueCacheStatistics();
+        assertEquals(1, results);
+        assertEquals(results, after.getHits() + after.getMisses() - before.getHits() - before.getMisses());
+    }
+
+    @Test
+    public void basicGraphPatternsAreEvaluatedAsWalks() {
+        String[] queries = {
+                "SELECT * WHERE { ?a foaf:knows ?b . ?b foaf:knows ?c }",
+                "SELECT ?a ?c WHERE { ?a foaf:knows ?b . ?b foaf:knows ?c . ?c foaf:age ?age }",
+                "SELECT * WHERE { ?a foaf:knows ?b . ?b foaf:knows ?a }",
+                "SELECT * WHERE { ?a foaf:knows ?a . ?a foaf:name ?name }",
+                "SELECT * WHERE { ?a ?p ?b . ?b ?p ?a }",
+                "SELECT * WHERE { ex:person3 foaf:knows ?b . ?b ?p ?o }",
+                "SELECT * WHERE { ?a foaf:knows ex:nobody . ?a foaf:name ?name }",
+                "SELECT * WHERE { ?a foaf:age ?age . ?b foaf:age ?age . FILTER(?a != ?b) }",
+                "SELECT * WHERE { ?a foaf:age ?age . ?a foaf:knows ?b . FILTER(?age > 23) }",
+                "SELECT * WHERE { ?a foaf:knows ?b . ?b foaf:age ?age FILTER(?age < 22 || ?a = ex:person0) }",
+                "SELECT * WHERE { ?a foaf:age ?age . FILTER(?age = 21) }",
+                "SELECT * WHERE { ?a foaf:knows ?b . ?b foaf:name ?name FILTER(regex(?name, \"1\")) }",
+                "SELECT * WHERE { ?a foaf:knows ?b . FILTER(bound(?b) && !bound(?c)) }",
+                "SELECT * WHERE { GRAPH ?g { ?a foaf:knows ?b } . ?b foaf:name ?name }",
+                "SELECT * WHERE { GRAPH ?g { ?a ?p ?o } . GRAPH ?g { ?o ?q ?x } }",
+                "SELECT * WHERE { GRAPH ex:graph2 { ?a ?p ?o } . ?a foaf:age ?age }",
+                "SELECT * WHERE { ?a a ?type . GRAPH ?g { ?type rdfs:label ?label } }",
+                "SELECT * WHERE { ?a foaf:knows ?b . FILTER EXISTS { ?b foaf:knows ?a } }",
+                "SELECT * FROM ex:graph1 WHERE { ?a foaf:name ?name . ?a foaf:knows ?b }",
+                "SELECT * WHERE { ?a foaf:knows ?b . OPTIONAL { ?b foaf:knows ?c . ?c foaf:age 20 } }",
+                "SELECT * WHERE { ?b foaf:age ?age . { SELECT ?b WHERE { ?a foaf:knows ?b } } }",
+                "SELECT * WHERE { VALUES ?a { ex:person1 ex:person2 \"x\" } ?a foaf:knows ?b . ?b foaf:age ?age }"};
+        for (String query : queries) {
+            assertSameResults(query);
+        }
+
+        // only the projected values are created
+        String query = "SELECT ?a WHERE { ?a foaf:knows ?b . ?b foaf:knows ?c . ?c foaf:age ?age }";
+        CacheStatistics before = graphSail.getValueCacheStatistics();
+        int results = evaluate(graphSail, query).size();
+        CacheStatistics after = graphSail.getValueCacheStatistics();
+        assertTrue(results > 0);
+        assertEquals(results, after.getHits() + after.getMisses() - before.getHits() - before.getMisses());
+    }
+
+    @Test
+    public void starPatternsAreMatchedFromOneScan() {
+        String[] queries = {
+                "SELECT * WHERE { ?a a foaf:Person ; foaf:age ?age ; foaf:knows ?b }",
+                "SELECT * WHERE { ?a foaf:knows ?b ; foaf:knows ?c }",
+                "SELECT * WHERE { ?a foaf:knows ?b ; foaf:knows ?b ; foaf:age ?age }",
+                "SELECT * WHERE { ?a foaf:knows ?a ; foaf:age ?age }",
+                "SELECT * WHERE { ?a foaf:age 21 ; foaf:knows ?b . ?b foaf:age ?age ; foaf:knows ?c }",
+                "SELECT * WHERE { ?a foaf:age ?age ; foaf:knows ?b . ?b foaf:age ?age }",
+                "SELECT * WHERE { ex:person3 foaf:knows ?b ; foaf:age ?age ; a ?type }",
+                "SELECT * WHERE { ex:person3 foaf:knows ?b ; foaf:name ?name }",
+                "SELECT * WHERE { ex:nobody foaf:knows ?b ; foaf:age ?age }",
+                "SELECT * WHERE { ?a foaf:knows ex:person4 ; foaf:age ?age }",
+                "SELECT * WHERE { ?a foaf:age ?age ; foaf:knows ?b FILTER(?age > 22) . ?a a ?type }",
+                "SELECT * WHERE { ?a foaf:knows ?b . ?b foaf:age ?age . ?a foaf:age ?age2 FILTER(?age < ?age2) }",
+                "SELECT * WHERE { ?a foaf:age ?age ; foaf:nick ?nick }"};
+        for (String query : queries) {
+            assertSameResults(query);
+        }
+    }
+
+    @Test
+    public void joinsWithOtherExpressionsAreBatched() {
+        String[] queries = {
+                "SELECT * WHERE { ?x foaf:knows+ ?y . ?y foaf:age ?age ; foaf:name ?name }",
+                "SELECT * WHERE { { ?a foaf:age 21 } UNION { ?a foaf:age 22 } UNION { ?a foaf:age 99 } . "
+                        + "?a foaf:knows ?b . ?b foaf:age ?age }",
+                "SELECT * WHERE { { ?a foaf:age ?age OPTIONAL { ?a foaf:knows ?a } } . ?a foaf:knows ?b FILTER(?b != ?a) }",
+                "SELECT * WHERE { VALUES ?a { ex:person1 ex:nobody \"x\" } . ?a foaf:knows ?b }"};
+        for (String query : queries) {
+            assertSameResults(query);
+        }
+
+        // more solutions than fit in one batch
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < BatchedBindJoin.BATCH_SIZE + 50; i++) {
+            values.append(" ex:person").append(i % 25);
+        }
+        assertSameResults("SELECT * WHERE { VALUES ?a {" + values + " } . ?a foaf:knows ?b . ?b foaf:age ?age }");
+    }
+
+    @Test
+    public void solutionModifiersAreAppliedByTheWalk() {
+        String[] queries = {
+                "SELECT DISTINCT ?p WHERE { ?s ?p ?o }",
+                "SELECT DISTINCT ?a WHERE { ?a foaf:knows ?b . ?b foaf:knows ?c }",
+                "SELECT DISTINCT ?a ?c WHERE { ?a foaf:knows ?b . ?b foaf:knows ?c }",
+                "SELECT DISTINCT ?g WHERE { GRAPH ?g { ?a ?p ?o } }",
+                "SELECT DISTINCT * WHERE { ?a foaf:knows ?b ; foaf:knows ?c }",
+                "SELECT DISTINCT ?b WHERE { ex:person3 foaf:knows ?b . ?b ?p ?o }",
+                "SELECT DISTINCT ?a ?nothing WHERE { ?a foaf:knows ?b }",
+                "SELECT DISTINCT ?type WHERE { ?a a ?type } LIMIT 100",
+                "SELECT ?a ?b WHERE { ?a foaf:knows ?b } OFFSET 0 LIMIT 1000",
+                "SELECT DISTINCT ?a WHERE { ?a foaf:knows ?b } OFFSET 1000",
+                "SELECT * WHERE { ?a foaf:knows ?b } LIMIT 0"};
+        for (String query : queries) {
+            assertSameResults(query);
+        }
+
+        // the order of solutions is unspecified, so only the number of solutions in a slice can be compared
+        String[] sliced = {
+                "SELECT ?a ?b WHERE { ?a foaf:knows ?b . ?b foaf:age ?age } LIMIT 5",
+                "SELECT ?a ?b WHERE { ?a foaf:knows ?b . ?b foaf:age ?age } OFFSET 10 LIMIT 5",
+                "SELECT ?a ?b WHERE { ?a foaf:knows ?b . ?b foaf:age ?age } OFFSET 3",
+                "SELECT DISTINCT ?a WHERE { ?a foaf:knows ?b . ?b foaf:age ?age } LIMIT 3",
+                "SELECT DISTINCT ?a WHERE { ?a foaf:knows ?b . ?b foaf:age ?age } OFFSET 2 LIMIT 100",
+                "SELECT * WHERE { ?a foaf:age ?age FILTER(?age > 21) } OFFSET 1 LIMIT 2"};
+        for (String query : sliced) {
+            List<BindingSet> results = evaluate(graphSail, query);
+            assertEquals(query, evaluate(reference, query).size(), results.size());
+            String unsliced = query.substring(0, query.lastIndexOf('}') + 1);
+            assertTrue(query, toMultiset(evaluate(reference, unsliced)).keySet().containsAll(results));
+            if (query.contains("DISTINCT")) {
+                assertEquals(query, results.size(), new HashSet<>(results).size());
+            }
+        }
+
+        // only distinct solutions are converted to values
+        String query = "SELECT DISTINCT ?type WHERE { ?a a ?type }";
+        CacheStatistics before = graphSail.getValueCacheStatistics();
+        int results = evaluate(graphSail, query).size();
+        CacheStatistics after = graphSail.getValueCacheStatistics();
+        assertTrue(results > 0);
+        assertEquals(results, after.getHits() + after.getMisses() - before.getHits() - before.getMisses());
+    }
+
+    @Test
+    public void rangeFiltersAreAnsweredFromTheRangeIndex() {
+        graphSail.enableRangeIndex();
+
+        // statements added after the index is enabled are indexed as they are added
+        ValueFactory vf = graphSail.getValueFactory();
+        IRI price = vf.createIRI(EX + "price");
+        IRI date = vf.createIRI(EX + "date");
+        Literal[] prices = {vf.createLiteral(50), vf.createLiteral(100), vf.createLiteral(150L),
+                vf.createLiteral(new BigDecimal("100.5")), vf.createLiteral(99.9), vf.createLiteral(200.0f),
+                vf.createLiteral("NaN", XMLSchema.DOUBLE), vf.createLiteral("-INF", XMLSchema.DOUBLE),
+                vf.createLiteral("abc", XMLSchema.INTEGER), vf.createLiteral("150"),
+                vf.createLiteral("12345678901234567890123", XMLSchema.INTEGER),
+                vf.createLiteral(0.1f), vf.createLiteral(new BigDecimal("0.1"))};
+        Literal[] dates = {vf.createLiteral("2017-06-01T12:00:00Z", XMLSchema.DATETIME),
+                vf.createLiteral("2017-06-01T12:00:00", XMLSchema.DATETIME),
+                vf.createLiteral("2017-06-01T20:00:00+05:00", XMLSchema.DATETIME),
+                vf.createLiteral("2018-01-01T00:00:00Z", XMLSchema.DATETIME),
+                vf.createLiteral("2017-06-01", XMLSchema.DATE),
+                vf.createLiteral("2017-06-02Z", XMLSchema.DATE),
+                vf.createLiteral("2017-06-01", XMLSchema.GYEARMONTH)};
+        List<Statement> statements = new LinkedList<>();
+        for (int i = 0; i < prices.length; i++) {
+            statements.add(vf.createStatement(vf.createIRI(EX + "item" + i), price, prices[i]));
+            statements.add(vf.createStatement(vf.createIRI(EX + "item" + i), RDFS.LABEL, vf.createLiteral(i)));
+        }
+        for (int i = 0; i < dates.length; i++) {
+            statements.add(vf.createStatement(vf.createIRI(EX + "event" + i), date, dates[i]));
+        }
+        addStatements(statements);
+
+        String[] queries = {
+                "SELECT * WHERE { ?a foaf:age ?age FILTER(?age > 23) }",
+                "SELECT * WHERE { ?a foaf:age ?age FILTER(?age >= 23 && ?age < 25) }",
+                "SELECT * WHERE { ?a foaf:age ?age FILTER(22 > ?age) }",
+                "SELECT * WHERE { ?a foaf:age ?age FILTER(?age = 21) }",
+                "SELECT * WHERE { ?a foaf:age ?age FILTER(?age > 25 && ?age < 21) }",
+                "SELECT * WHERE { ?a foaf:age ?age FILTER(?age > 23 || ?age < 21) }",
+                "SELECT * WHERE { ?a foaf:age ?age ; foaf:knows ?b FILTER(?age > 24) }",
+                "SELECT * WHERE { ?a foaf:knows ?b . ?b foaf:age ?age FILTER(?age <= 20) }",
+                "SELECT * WHERE { ?x ex:price ?p FILTER(?p > 100) }",
+                "SELECT * WHERE { ?x ex:price ?p FILTER(?p >= 100) }",
+                "SELECT * WHERE { ?x ex:price ?p FILTER(?p < 100.5) }",
+                "SELECT * WHERE { ?x ex:price ?p FILTER(?p > \"100\"^^xsd:double) }",
+                "SELECT * WHERE { ?x ex:price ?p FILTER(?p > 1e22) }",
+                "SELECT * WHERE { ?x ex:price ?p FILTER(?p = 150) }",
+                "SELECT * WHERE { ?x ex:price ?p FILTER(?p > \"100\") }",
+                "SELECT * WHERE { ?x ex:price ?p ; rdfs:label ?l FILTER(?p > 99 && ?p < 160) }",
+                // any comparison with a float is made at float precision
+                "SELECT * WHERE { ?x ex:price ?p FILTER(?p = \"0.10000000149\"^^xsd:float) }",
+                "SELECT * WHERE { ?x ex:price ?p FILTER(?p >= \"0.1000000001\"^^xsd:float) }",
+                "SELECT * WHERE { ?x ex:price ?p FILTER(?p <= \"0.0999999999\"^^xsd:float) }",
+                "SELECT * WHERE { ?x ex:price ?p FILTER(?p = 0.10000000149) }",
+                "SELECT * WHERE { ?x ex:date ?d FILTER(?d > \"2017-06-01T12:00:00Z\"^^xsd:dateTime) }",
+                "SELECT * WHERE { ?x ex:date ?d FILTER(?d >= \"2017-06-01T12:00:00Z\"^^xsd:dateTime) }",
+                "SELECT * WHERE { ?x ex:date ?d FILTER(?d < \"2017-12-31T00:00:00\"^^xsd:dateTime) }",
+                "SELECT * WHERE { ?x ex:date ?d FILTER(?d <= \"2017-06-01\"^^xsd:date) }",
+                "SELECT * WHERE { ?x ex:date ?d FILTER(?d > \"2017-06-01Z\"^^xsd:date) }"};
+        for (String query : queries) {
+            assertSameResults(query);
+        }
+
+        // removed statements are removed from the index
+        try (SailConnection sc = graphSail.getConnection()) {
+            sc.begin();
+            sc.removeStatements(null, price, prices[2]);
+            sc.commit();
+        }
+        try (SailConnection sc = reference.getConnection()) {
+            sc.begin();
+            sc.removeStatements(null, price, prices[2]);
+            sc.commit();
+        }
+        assertSameResults("SELECT * WHERE { ?x ex:price ?p FILTER(?p > 100) }");
+
+        // only the values of those statements within the range are created
+        String query = "SELECT ?a WHERE { ?a foaf:age ?age FILTER(?age >= 26) }";
+        CacheStatistics before = graphSail.getValueCacheStatistics();
+        int results = evaluate(graphSail, query).size();
+        CacheStatistics after = graphSail.getValueCacheStatistics();
+        assertTrue(results > 0);
+        assertEquals(2 * results, after.getHits() + after.getMisses() - before.getHits() - before.getMisses());
+    }
+
+    @Test
+    public void textFiltersAreAnsweredFromTheTextIndex() {
+        ValueFactory vf = graphSail.getValueFactory();
+        IRI tag = vf.createIRI(EX + "tag");
+        Literal[] labels = {vf.createLiteral("Hello World"), vf.createLiteral("hello there", "en"),
+                vf.createLiteral("HELLO", XMLSchema.STRING), vf.createLiteral("Stra\u00dfe"),
+                vf.createLiteral("\u039f\u0394\u039f\u03a3"), vf.createLiteral("\u0130stanbul"),
+                vf.createLiteral("Hello, world?"), vf.createLiteral(12345)};
+        List<Statement> statements = new LinkedList<>();
+        for (int i = 0; i < labels.length; i++) {
+            IRI thing = vf.createIRI(EX + "thing" + i);
+            statements.add(vf.createStatement(thing, RDFS.LABEL, labels[i]));
+            statements.add(vf.createStatement(thing, tag, vf.createLiteral("tag " + i % 2)));
+        }
+        statements.add(vf.createStatement(vf.createIRI(EX + "hello"), RDFS.COMMENT, vf.createIRI(EX + "hello")));
+        // literals which exist before the index is enabled are indexed when it is enabled, and later ones as added
+        addStatements(statements.subList(0, 6));
+        graphSail.enableTextIndex();
+        addStatements(statements.subList(6, statements.size()));
+
+        String[] queries = {
+                "SELECT * WHERE { ?x rdfs:label ?l FILTER(CONTAINS(?l, \"llo\")) }",
+                "SELECT * WHERE { ?x rdfs:label ?l FILTER(CONTAINS(LCASE(?l), \"hello\")) }",
+                "SELECT * WHERE { ?x rdfs:label ?l FILTER(CONTAINS(LCASE(?l), \"HELLO\")) }",
+                "SELECT * WHERE { ?x rdfs:label ?l FILTER(CONTAINS(?l, \"hello\") && CONTAINS(?l, \"there\")) }",
+                "SELECT * WHERE { ?x rdfs:label ?l FILTER(STRSTARTS(?l, \"Hel\")) }",
+                "SELECT * WHERE { ?x rdfs:label ?l FILTER(STRENDS(?l, \"rld\")) }",
+                "SELECT * WHERE { ?x rdfs:label ?l FILTER(REGEX(?l, \"^hello\", \"i\")) }",
+                "SELECT * WHERE { ?x rdfs:label ?l FILTER(REGEX(?l, \"WORLD\", \"i\")) }",
+                "SELECT * WHERE { ?x rdfs:label ?l FILTER(REGEX(?l, \"wor.d\")) }",
+                "SELECT * WHERE { ?x rdfs:label ?l FILTER(REGEX(?l, \"straSSe\", \"i\")) }",
+                "SELECT * WHERE { ?x rdfs:label ?l FILTER(REGEX(?l, \"\u03bf\u03b4\u03bf\u03c3\", \"i\")) }",
+                "SELECT * WHERE { ?x rdfs:label ?l FILTER(CONTAINS(LCASE(?l), \"istanbul\")) }",
+                "SELECT * WHERE { ?x rdfs:label ?l FILTER(CONTAINS(LCASE(?l), \"\u039f\u0394\u039f\u03a3\")) }",
+                "SELECT * WHERE { ?x rdfs:label ?l FILTER(CONTAINS(?l, \"234\")) }",
+                "SELECT * WHERE { ?x rdfs:label ?l FILTER(CONTAINS(?l, \"zzz\")) }",
+                "SELECT * WHERE { ?x rdfs:label ?l FILTER(CONTAINS(?l, \"o\")) }",
+                "SELECT * WHERE { ?x ?p ?o FILTER(CONTAINS(?o, \"ello\")) }",
+                "SELECT * WHERE { ?x ?p ?o FILTER(CONTAINS(STR(?o), \"ello\")) }",
+                "SELECT * WHERE { ?x rdfs:label ?l ; ex:tag ?t FILTER(CONTAINS(LCASE(?l), \"hello\")) }",
+                "SELECT * WHERE { ?x foaf:name ?n FILTER(CONTAINS(?n, \"person 1\")) }",
+                "SELECT * WHERE { GRAPH ?g { ?x foaf:name ?n } FILTER(CONTAINS(?n, \"person 1\")) }"};
+        for (String query : queries) {
+            assertSameResults(query);
+        }
+
+        // literals which are removed from the graph are removed from the index
+        for (Sail sail : new Sail[]{graphSail, reference}) {
+            try (SailConnection sc = sail.getConnection()) {
+                sc.begin();
+                sc.removeStatements(null, RDFS.LABEL, labels[0]);
+                sc.commit();
+            }
+        }
+        assertSameResults("SELECT * WHERE { ?x rdfs:label ?l FILTER(CONTAINS(LCASE(?l), \"hello\")) }");
+
+        // only the values of those literals which contain the string are created
+        String query = "SELECT ?x WHERE { ?x foaf:name ?n FILTER(CONTAINS(?n, \"person 1\")) }";
+        CacheStatistics before = graphSail.getValueCacheStatistics();
+        int results = evaluate(graphSail, query).size();
+        CacheStatistics after = graphSail.getValueCacheStatistics();
+        assertTrue(results > 0);
+        assertEquals(2 * results, after.getHits() + after.getMisses() - before.getHits() - before.getMisses());
+    }
+
+    @Test
+    public void propertyPathsAreEvaluatedAsSearches() {
+        String[] queries = {
+                "SELECT * WHERE { ?x rdfs:subClassOf* ?y }",
+                "SELECT * WHERE { ?x rdfs:subClassOf+ ?y }",
+                "SELECT * WHERE { ex:Class0 rdfs:subClassOf* ?y }",
+                "SELECT * WHERE { ex:Class0 rdfs:subClassOf+ ?y }",
+                "SELECT * WHERE { ?x rdfs:subClassOf* ex:Class4 }",
+                "SELECT * WHERE { ?x rdfs:subClassOf+ ex:Class4 }",
+                "SELECT * WHERE { ?x ^rdfs:subClassOf+ ex:Class0 }",
+                "SELECT * WHERE { ex:Class6 ^rdfs:subClassOf* ?y }",
+                "SELECT * WHERE { ex:Class0 rdfs:subClassOf+ ex:Class5 }",
+                "SELECT * WHERE { ex:Class5 rdfs:subClassOf+ ex:Class0 }",
+                "SELECT * WHERE { ex:Class4 rdfs:subClassOf+ ex:Class4 }",
+                "SELECT * WHERE { ex:Class0 rdfs:subClassOf+ ex:Class0 }",
+                "SELECT * WHERE { ex:Class0 rdfs:subClassOf* ex:Class0 }",
+                "SELECT * WHERE { ex:nothing rdfs:subClassOf* ?y }",
+                "SELECT * WHERE { ex:nothing rdfs:subClassOf* ex:nothing }",
+                "SELECT * WHERE { ?p foaf:knows+ ?q }",
+                "SELECT * WHERE { ?a a ?type . ?type rdfs:subClassOf* ?super }",
+                "SELECT * WHERE { ?x rdfs:subClassOf? ?y }",
+                "SELECT * WHERE { ?x foaf:knows/foaf:knows* ?y }",
+                "SELECT * WHERE { GRAPH ?g { ?x foaf:knows+ ?y } }"};
+        for (String query : queries) {
+            assertSameResults(query);
+        }
+    }
+
+    @Test
+    public void sizeCountsDistinctStatements() {
+        ValueFactory vf = graphSail.getValueFactory();
+        IRI graph1 = vf.createIRI(EX + "graph1");
+        createConnection();
+        // a duplicate statement is stored as a second edge, in the absence of the unique statements policy
+        connection.begin();
+        connection.addStatement(vf.createIRI(EX + "person0"), RDF.TYPE, FOAF.PERSON);
+        connection.commit();
+
+        try (SailConnection sc = reference.getConnection()) {
+            assertEquals(sc.size(), connection.size());
+            assertEquals(sc.size(graph1), connection.size(graph1));
+            assertEquals(sc.size((Resource) null), connection.size((Resource) null));
+            assertEquals(sc.size(graph1, null), connection.size(graph1, null));
+        }
+        assertTrue(connection.size() > 0);
+        connection.close();
+    }
+
+    private void addStatements(final List<Statement> statements) {
+        for (Sail sail : new Sail[]{graphSail, reference}) {
+            try (SailConnection sc = sail.getConnection()) {
+                sc.begin();
+                for (Statement st : statements) {
+                    sc.addStatement(st.getSubject(), st.getPredicate(), st.getObject(), st.getContext());
+                }
+                sc.commit();
+            }
+        }
+    }
+
+    private void assertSameResults(final String query) {
+        assertEquals(query, toMultiset(evaluate(reference, query)), toMultiset(evaluate(graphSail, query)));
+    }
+
+    private Map<BindingSet, Integer> toMultiset(final List<BindingSet> results) {
+        Map<BindingSet, Integer> multiset = new HashMap<>();
+        for (BindingSet bs : results) {
+            multiset.merge(bs, 1, Integer::sum);
+        }
+        return multiset;
+    }
+
+    private List<BindingSet> evaluate(final Sail sail, final String query) {
+        ParsedQuery parsed = new SPARQLParser().parseQuery(PREFIXES + query, EX);
+        List<BindingSet> results = new LinkedList<>();
+        try (SailConnection sc = sail.getConnection()) {
+            sc.begin();
+            try (CloseableIteration<? extends BindingSet, QueryEvaluationException> iter = sc.evaluate(
+                    parsed.getTupleExpr(), parsed.getDataset(), EmptyBindingSet.getInstance(), false)) {
+                while (iter.hasNext()) {
+                    results.add(iter.next());
+                }
+            }
+            sc.commit();
+        }
+        return results;
+    }
+}
@@ -0,0 +1,127 @@
+package net.fortytwo.tpop.sail;
+
+import net.fortytwo.tpop.sail.tg.TinkerGraphIndex;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.FOAF;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.eclipse.rdf4j.sail.SailException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public class StatementIndexTest extends GraphSailTestBase {
+    private ValueFactory vf;
+    private IRI alice, bob, carol, graph1, graph2;
+
+    @Before
+    public void setUp() {
+        super.setUp();
+        vf = graphSail.getValueFactory();
+        alice = vf.createIRI("http://example.org/alice");
+        bob = vf.createIRI("http://example.org/bob");
+        carol = vf.createIRI("http://example.org/carol");
+        graph1 = vf.createIRI("http://example.org/graph1");
+        graph2 = vf.createIRI("http://example.org/graph2");
+    }
+
+    @Test
+    public void predicatePatternsUseOnlyMatchingEdges() {
+        createConnection();
+        connection.begin();
+        connection.addStatement(alice, FOAF.KNOWS, bob);
+        connection.addStatement(bob, FOAF.KNOWS, carol, graph1);
+        connection.addStatement(alice, RDF.TYPE, FOAF.PERSON);
+        connection.addStatement(alice, RDFS.LABEL, vf.createLiteral("Alice"), graph1);
+        connection.commit();
+
+        connection.begin();
+        assertEquals(2, countIterator(connection.getStatements(null, FOAF.KNOWS, null, false)));
+        assertEquals(1, countIterator(connection.getStatements(null, FOAF.KNOWS, null, false, graph1)));
+        assertEquals(1, countIterator(connection.getStatements(null, FOAF.KNOWS, null, false, (IRI) null)));
+        assertEquals(0, countIterator(connection.getStatements(null, FOAF.KNOWS, null, false, graph2)));
+        assertEquals(0, countIterator(connection.getStatements(null, FOAF.MBOX, null, false)));
+        connection.commit();
+
+        connection.begin();
+        connection.removeStatements(null, FOAF.KNOWS, null);
+        connection.commit();
+
+        connection.begin();
+        assertEquals(0, countIterator(connection.getStatements(null, FOAF.KNOWS, null, false)));
+        assertEquals(2, countStatements());
+        connection.commit();
+        connection.close();
+    }
+
+    @Test
+    public void contextIdsAndContextReadsUseTheContextIndex() {
+        createConnection();
+        connection.begin();
+        connection.addStatement(alice, FOAF.KNOWS, bob);
+        connection.addStatement(alice, FOAF.KNOWS, carol, graph1);
+        connection.addStatement(bob, FOAF.KNOWS, carol, graph1);
+        connection.addStatement(carol, FOAF.KNOWS, alice, graph2);
+        connection.commit();
+
+        connection.begin();
+        Set<Resource> contexts = new HashSet<>();
+        try (CloseableIteration<? extends Resource, SailException> iter = connection.getContextIDs()) {
+            while (iter.hasNext()) {
+                contexts.add(iter.next());
+            }
+        }
+        assertEquals(new HashSet<>(Arrays.asList(graph1, graph2)), contexts);
+        assertEquals(2, countIterator(connection.getStatements(null, null, null, false, graph1)));
+        assertEquals(3, countIterator(connection.getStatements(null, null, null, false, graph1, graph2)));
+        assertEquals(1, countIterator(connection.getStatements(null, null, null, false, (IRI) null)));
+        assertEquals(1, countIterator(connection.getStatements(null, FOAF.KNOWS, null, false, graph2)));
+        connection.commit();
+
+        connection.begin();
+        connection.clear(graph1);
+        connection.commit();
+
+        connection.begin();
+        assertEquals(0, countIterator(connection.getStatements(null, null, null, false, graph1)));
+        assertEquals(1, countIterator(connection.getContextIDs()));
+        assertEquals(2, countStatements());
+        connection.commit();
+        connection.close();
+    }
+
+    @Test
+    public void preExistingEdgesAreIndexed() throws Exception {
+        TinkerGraph graph = TinkerGraph.open();
+        GraphSail first = new GraphSail(graph, key -> new TinkerGraphIndex(key, graph));
+        first.initialize();
+        try (SailConnection sc = first.getConnection()) {
+            sc.begin();
+            sc.addStatement(alice, FOAF.KNOWS, bob, graph1);
+            sc.addStatement(bob, FOAF.KNOWS, carol);
+            sc.commit();
+        }
+
+        // a second sail over the same graph must see the same statements through its indices
+        GraphSail second = new GraphSail(graph, key -> new TinkerGraphIndex(key, graph));
+        second.initialize();
+        try (SailConnection sc = second.getConnection()) {
+            sc.begin();
+            assertEquals(2, countIterator(sc.getStatements(null, FOAF.KNOWS, null, false)));
+            assertEquals(1, countIterator(sc.getStatements(null, null, null, false, graph1)));
+            sc.commit();
+        }
+        second.shutDown();
+        first.shutDown();
+    }
+}